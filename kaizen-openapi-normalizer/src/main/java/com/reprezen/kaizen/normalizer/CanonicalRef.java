@@ -0,0 +1,172 @@
+package com.reprezen.kaizen.normalizer;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.reprezen.kaizen.normalizer.loader.VirtualSchemes;
+
+/**
+ * The parsed and normalized form of a reference string, as resolved against a
+ * base URL.
+ * <p>
+ * Instances are immutable, and are shared by all the {@link Reference} objects
+ * with the same reference string and base; see {@link ReferenceFactory}. The
+ * state that varies from one use of a reference to another - its component,
+ * and whether it has been found to be invalid - lives in the
+ * {@link Reference}.
+ */
+public final class CanonicalRef {
+
+	private final URL url;
+	private final String urlString;
+	private final String fragment;
+	private final JsonPointer pointer;
+	private final Exception parseException;
+	private final int hash;
+	private volatile CanonicalRef urlRef;
+
+	/**
+	 * Parse a reference string; use {@link ReferenceFactory#get(URL, String)} to
+	 * obtain a shared instance instead.
+	 *
+	 * @param base
+	 *            URL against which the reference is resolved; may be null
+	 * @param refString
+	 *            the reference string
+	 */
+	CanonicalRef(URL base, String refString) {
+		String[] parts = refString.split("#", 2);
+		URL url = null;
+		String urlString = parts[0];
+		Exception parseException = null;
+		try {
+			url = normalizeUrl(base, urlString);
+			urlString = url.toString();
+		} catch (MalformedURLException | URISyntaxException e) {
+			parseException = e;
+		}
+		String fragment = parts.length > 1 && !parts[1].isEmpty() ? parts[1] : null;
+		JsonPointer pointer = null;
+		try {
+			pointer = JsonPointer.compile(fragment != null ? fragment : "");
+		} catch (Exception e) {
+			parseException = e;
+		}
+		this.url = url;
+		this.urlString = urlString;
+		this.fragment = fragment;
+		this.pointer = pointer;
+		this.parseException = parseException;
+		this.hash = hash(urlString, fragment);
+	}
+
+	CanonicalRef(URL url, String urlString, String fragment, JsonPointer pointer, Exception parseException) {
+		this.url = url;
+		this.urlString = urlString;
+		this.fragment = fragment;
+		this.pointer = pointer;
+		this.parseException = parseException;
+		this.hash = hash(urlString, fragment);
+	}
+
+	public URL getUrl() {
+		return url;
+	}
+
+	public String getUrlString() {
+		return urlString;
+	}
+
+	public String getFragment() {
+		return fragment;
+	}
+
+	/**
+	 * @return the fragment as a JSON pointer, or null if it isn't one
+	 */
+	public JsonPointer getPointer() {
+		return pointer;
+	}
+
+	/**
+	 * @return the last problem found parsing the reference string, or null if it
+	 *         parsed cleanly
+	 */
+	public Exception getParseException() {
+		return parseException;
+	}
+
+	/**
+	 * @return the reference to the whole document, i.e. this reference without
+	 *         its fragment
+	 */
+	public CanonicalRef getUrlRef() {
+		if (fragment == null) {
+			return this;
+		}
+		// racing threads may both look this up; the factory gives them equal values
+		CanonicalRef ref = urlRef;
+		if (ref == null) {
+			this.urlRef = ref = ReferenceFactory.getDefault().get((URL) null, urlString);
+		}
+		return ref;
+	}
+
+	/**
+	 * @param fragment
+	 *            replacement fragment
+	 * @return a reference to the same document with the given fragment
+	 */
+	public CanonicalRef withFragment(String fragment) {
+		JsonPointer pointer = null;
+		Exception pointerException = null;
+		try {
+			pointer = JsonPointer.compile(fragment != null ? fragment : "");
+		} catch (Exception e) {
+			pointerException = e;
+		}
+		return new CanonicalRef(url, urlString, fragment, pointer,
+				pointerException != null ? pointerException : url != null ? null : parseException);
+	}
+
+	private static URL normalizeUrl(URL base, String urlString) throws MalformedURLException, URISyntaxException {
+		URL url = VirtualSchemes.createUrl(base, urlString);
+		URI uri = url.toURI();
+		URI normalized = uri.normalize();
+		// most URLs are already normal, and need not be parsed again
+		return normalized == uri ? url : VirtualSchemes.createUrl(null, normalized.toString());
+	}
+
+	private static int hash(String urlString, String fragment) {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((fragment == null) ? 0 : fragment.hashCode());
+		result = prime * result + ((urlString == null) ? 0 : urlString.hashCode());
+		return result;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof CanonicalRef)) {
+			return false;
+		}
+		CanonicalRef other = (CanonicalRef) obj;
+		return hash == other.hash && (fragment == null ? other.fragment == null : fragment.equals(other.fragment))
+				&& (urlString == null ? other.urlString == null : urlString.equals(other.urlString));
+	}
+
+	@Override
+	public String toString() {
+		return urlString + (fragment != null ? "#" + fragment : "");
+	}
+}
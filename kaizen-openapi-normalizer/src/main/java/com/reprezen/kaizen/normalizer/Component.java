@@ -1,6 +1,8 @@
 package com.reprezen.kaizen.normalizer;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
 
 public interface Component {
 	boolean isConformingSite();
@@ -13,6 +15,14 @@ public interface Component {
 
 	String getContainerPath();
 
+	/**
+	 * @return names of fields that hold example payloads in objects of this kind;
+	 *         none by default
+	 */
+	default Set<String> getExampleFields() {
+		return Collections.emptySet();
+	}
+
 	String name();
 
 	String getPreferredName(String path, URL url);
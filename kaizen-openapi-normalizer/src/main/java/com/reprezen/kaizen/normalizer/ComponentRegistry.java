@@ -0,0 +1,129 @@
+package com.reprezen.kaizen.normalizer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v3.V3State;
+
+/**
+ * Registry of the {@link Component} enums whose values can be written into,
+ * and read back from, reference nodes.
+ * <p>
+ * Each enum is known by a short id, and each of its values by the id and the
+ * value's name, as in <code>v2:SCHEMA</code>. Reading a value back is a pair
+ * of map lookups, with no class loading or reflection. {@link V2State} and
+ * {@link V3State} are registered as <code>v2</code> and <code>v3</code>; other
+ * component enums are registered under their class names the first time one
+ * of their values is written, or can be registered explicitly - as they must
+ * be if their values are to be read back in another JVM.
+ */
+public class ComponentRegistry {
+
+	private static final char SEPARATOR = ':';
+
+	private static final ComponentRegistry defaultRegistry = new ComponentRegistry();
+
+	private Map<String, Map<String, Component>> componentsById = new ConcurrentHashMap<>();
+	private Map<String, Class<?>> classesById = new ConcurrentHashMap<>();
+	private Map<Component, String> keys = new ConcurrentHashMap<>();
+
+	public ComponentRegistry() {
+		register("v2", V2State.class);
+		register("v3", V3State.class);
+	}
+
+	/**
+	 * @return the registry used by {@link Reference}
+	 */
+	public static ComponentRegistry getDefault() {
+		return defaultRegistry;
+	}
+
+	/**
+	 * Register a component enum
+	 *
+	 * @param id
+	 *            short id for the enum, not containing a colon
+	 * @param componentClass
+	 *            the enum class
+	 * @throws IllegalArgumentException
+	 *             if the id is malformed, or already used by another enum
+	 */
+	public synchronized <E extends Enum<E> & Component> void register(String id, Class<E> componentClass) {
+		if (id.isEmpty() || id.indexOf(SEPARATOR) >= 0) {
+			throw new IllegalArgumentException("Invalid component id: " + id);
+		}
+		Class<?> existing = classesById.get(id);
+		if (existing != null && existing != componentClass) {
+			throw new IllegalArgumentException("Component id already registered: " + id);
+		}
+		E[] constants = componentClass.getEnumConstants();
+		Map<String, Component> values = new HashMap<>();
+		for (E value : constants) {
+			values.put(value.name(), value);
+		}
+		values = Collections.unmodifiableMap(values);
+		// the class name always works as an id, as it did before ids were introduced
+		for (String key : new String[] { id, componentClass.getName() }) {
+			if (classesById.putIfAbsent(key, componentClass) == null) {
+				componentsById.put(key, values);
+			}
+		}
+		// values keep the id they were first registered with
+		if (constants.length > 0 && !keys.containsKey(constants[0])) {
+			for (E value : constants) {
+				keys.put(value, id + SEPARATOR + value.name());
+			}
+		}
+	}
+
+	/**
+	 * @param component
+	 *            a component enum value
+	 * @return the key identifying that value, e.g. <code>v2:SCHEMA</code>
+	 * @throws IllegalArgumentException
+	 *             if the component is not an enum value
+	 */
+	public String getKey(Component component) {
+		String key = keys.get(component);
+		if (key == null) {
+			register(component);
+			key = keys.get(component);
+		}
+		return key;
+	}
+
+	/**
+	 * @param key
+	 *            a key obtained from {@link #getKey(Component)}
+	 * @return the component value, or null if there is none with that key
+	 */
+	public Component getComponent(String key) {
+		int sep = key.lastIndexOf(SEPARATOR);
+		return sep > 0 ? getComponent(key.substring(0, sep), key.substring(sep + 1)) : null;
+	}
+
+	/**
+	 * @param id
+	 *            id, or class name, of a component enum
+	 * @param name
+	 *            name of one of its values
+	 * @return the component value, or null if there is no such value
+	 */
+	public Component getComponent(String id, String name) {
+		Map<String, Component> values = componentsById.get(id);
+		return values != null ? values.get(name) : null;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void register(Component component) {
+		if (!(component instanceof Enum)) {
+			throw new IllegalArgumentException("Components must be enum values: " + component);
+		}
+		Class<?> cls = ((Enum<?>) component).getDeclaringClass();
+		register(cls.getName(), (Class) cls);
+	}
+}
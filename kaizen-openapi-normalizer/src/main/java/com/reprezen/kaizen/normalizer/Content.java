@@ -1,8 +1,17 @@
 package com.reprezen.kaizen.normalizer;
 
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.reprezen.kaizen.normalizer.ReferenceScanner.ScanOp;
+import com.reprezen.kaizen.normalizer.util.CompactNode;
+import com.reprezen.kaizen.normalizer.util.JsonStateWalker;
+import com.reprezen.kaizen.normalizer.util.JsonStateWalker.SimpleWalkMethod;
 import com.reprezen.kaizen.normalizer.util.StateMachine.State;
 
 public class Content<E extends Enum<E> & Component> {
@@ -13,6 +22,14 @@ public class Content<E extends Enum<E> & Component> {
 	private String invalidReason = null;
 	private ContentManager<E> contentManager;
 	private Options options;
+	private boolean examplesSkipped = false;
+	// nodes found by pointer, keyed by pointer string; dropped whenever the tree is replaced
+	private volatile Map<String, JsonNode> pointerIndex = null;
+	// a scan may replace nodes anywhere in the tree, so lookups made while it runs
+	// bypass the index
+	private volatile boolean scanning = false;
+	// the reference behind each ref node left in the tree by the last reference-handling scan
+	private Map<JsonNode, Reference> references = null;
 
 	Content(Reference ref, JsonNode tree, State<E> scanState2, ContentManager<E> contentManager, Options options) {
 		this.ref = ref;
@@ -30,27 +47,153 @@ public class Content<E extends Enum<E> & Component> {
 	}
 
 	public void scan(ScanOp scanOp) {
-		this.tree = new ReferenceScanner<E>(tree, ref, scanOp, contentManager, options).scan(scanState);
+		if (scanOp != ScanOp.COMPONENTS) {
+			this.references = new IdentityHashMap<>();
+		}
+		JsonNode scanned = getTree();
+		this.scanning = true;
+		this.pointerIndex = null;
+		try {
+			this.tree = new ReferenceScanner<E>(scanned, ref, scanOp, contentManager, options, references)
+					.scan(scanState);
+		} finally {
+			this.pointerIndex = null;
+			this.scanning = false;
+		}
 	}
 
 	public Reference getRef() {
 		return ref;
 	}
 
+	/**
+	 * Get the reference behind a ref node in this content's tree.
+	 * <p>
+	 * Scans record the references they resolve against the ref nodes they leave in
+	 * the tree, instead of adorning the nodes, so the tree itself holds only what
+	 * will be output.
+	 *
+	 * @param refNode
+	 *            a ref node, as found in the tree
+	 * @return the reference, or null if the node wasn't left by the last scan
+	 */
+	public Reference getReference(JsonNode refNode) {
+		return references != null ? references.get(refNode) : null;
+	}
+
+	/**
+	 * Get this content's tree, which may be altered by the caller.
+	 * <p>
+	 * A compact tree, loaded with {@link Option#COMPACT_TREES}, is replaced by its
+	 * materialized form on first call. The tree of content drawn from part of a
+	 * document is found in the document's materialized tree, so the two share
+	 * their nodes, just as they do when trees aren't compact. With
+	 * {@link Option#SKIP_EXAMPLES}, example payloads are removed from the tree on
+	 * first call.
+	 *
+	 * @return the tree
+	 */
 	public JsonNode getTree() {
+		if (tree instanceof CompactNode) {
+			this.tree = materialize((CompactNode) tree);
+			this.pointerIndex = null;
+		}
+		if (!examplesSkipped && options != null && options.isSkipExamples()) {
+			skipExamples();
+		}
 		return tree;
 	}
 
+	private JsonNode materialize(CompactNode compact) {
+		JsonPointer pointer = ref.getPointer();
+		Content<E> doc = pointer.matches() ? null : contentManager.getLoadedDocument(ref);
+		if (doc != null && doc != this && doc.isValid()) {
+			doc.getTree();
+			JsonNode node = doc.at(pointer);
+			if (!node.isMissingNode()) {
+				return node;
+			}
+		}
+		return compact.materialize();
+	}
+
 	public JsonNode copyTree() {
-		return tree.deepCopy();
+		if (options != null && options.isSkipExamples()) {
+			// drop the examples first, rather than copying them
+			return getTree().deepCopy();
+		}
+		return tree instanceof CompactNode ? ((CompactNode) tree).materialize() : tree.deepCopy();
 	}
 
 	public JsonNode at(String pointer) {
 		return at(JsonPointer.compile(pointer));
 	}
 
+	/**
+	 * Find the node at the given pointer.
+	 * <p>
+	 * Nodes found are remembered, along with those on the way to them, so repeated
+	 * lookups in the same document - like the many references into a large
+	 * definitions file - cost a single map lookup, and new lookups only walk the
+	 * segments beyond the nearest node already found. Lookups made while this
+	 * content is being scanned walk the tree, since the scan may be rewriting it.
+	 * <p>
+	 * With {@link Option#SKIP_EXAMPLES}, example payloads are removed from the tree
+	 * before the first lookup, as they are by {@link #getTree()}. A compact tree is
+	 * left as it is, so nodes found in it may still hold examples; they're removed
+	 * from any content created from those nodes once its tree is obtained.
+	 *
+	 * @param pointer
+	 *            pointer into this content's tree
+	 * @return the node, or a missing node if there is none
+	 */
 	public JsonNode at(JsonPointer pointer) {
-		return tree.at(pointer);
+		if (!examplesSkipped && options != null && options.isSkipExamples() && !(tree instanceof CompactNode)) {
+			skipExamples();
+		}
+		if (pointer.matches()) {
+			return tree;
+		} else if (scanning) {
+			return tree.at(pointer);
+		}
+		Map<String, JsonNode> index = pointerIndex;
+		if (index == null) {
+			this.pointerIndex = index = new ConcurrentHashMap<>();
+		}
+		return at(pointer, index);
+	}
+
+	private JsonNode at(JsonPointer pointer, Map<String, JsonNode> index) {
+		if (pointer.matches()) {
+			return tree;
+		}
+		String key = pointer.toString();
+		JsonNode node = index.get(key);
+		if (node == null) {
+			JsonNode parent = at(pointer.head(), index);
+			node = parent.isMissingNode() ? parent : parent.at(pointer.last());
+			if (!node.isMissingNode()) {
+				index.put(key, node);
+			}
+		}
+		return node;
+	}
+
+	private void skipExamples() {
+		this.examplesSkipped = true;
+		this.pointerIndex = null;
+		if (scanState != null) {
+			new JsonStateWalker<E>(contentManager.getMachine().tracker(scanState),
+					(SimpleWalkMethod<E>) this::removeExampleFields).walk(tree);
+		}
+	}
+
+	// example fields are removed before the walker descends into them
+	private void removeExampleFields(JsonNode node, State<E> state, E stateValue, List<Object> path,
+			JsonPointer pointer) {
+		if (node.isObject() && !stateValue.getExampleFields().isEmpty()) {
+			((ObjectNode) node).remove(stateValue.getExampleFields());
+		}
 	}
 
 	public boolean isValid() {
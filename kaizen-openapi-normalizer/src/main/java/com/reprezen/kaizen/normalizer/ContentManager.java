@@ -1,34 +1,77 @@
 package com.reprezen.kaizen.normalizer;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.dataformat.yaml.snakeyaml.scanner.ScannerException;
 import com.reprezen.kaizen.normalizer.Localizer.LocalizedContent;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.util.CompactNode;
+import com.reprezen.kaizen.normalizer.util.CompactTreeBuilder;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
 import com.reprezen.kaizen.normalizer.util.StateMachine;
+import com.reprezen.kaizen.normalizer.util.SymbolTable;
 import com.reprezen.kaizen.normalizer.util.StateMachine.State;
 
 public class ContentManager<E extends Enum<E> & Component> {
 
 	private Map<Reference, Content<E>> contentCache = new HashMap<>();
+	// loads underway, by document; guarded by this manager's lock, like contentCache
+	private Map<Reference, CompletableFuture<Content<E>>> docsInFlight = new HashMap<>();
+	// keyed by URL string, since URL equality may involve host name lookups
+	private Map<String, URL> loadedUrls = new ConcurrentHashMap<>();
+	private volatile Consumer<URL> fetchListener = null;
 	private Localizer localizer = new Localizer();
 	private Options options;
 	private StateMachine<E> machine;
+	private DocumentPrefetcher prefetcher = null;
+	private DocumentLoaderRegistry loaders;
+	private DocumentParser parser = new DocumentParser();
+	private boolean compactTrees;
+	private SymbolTable symbols;
+	private SharedDocumentCache sharedCache;
+	private FailedLoadCache failedLoads;
+	private boolean releaseResolved;
+	private Map<Reference, Integer> holds = new HashMap<>();
+	// references found by scans but not yet resolved, counted by target document
+	private Map<Reference, Integer> outstanding = new HashMap<>();
+	private Map<Reference, Set<Reference>> contentRefsByDoc = new HashMap<>();
+	private int releasedCount = 0;
 
 	public ContentManager(Options options, StateMachine<E> machine) {
 		this.options = options;
 		this.machine = machine;
+		this.loaders = options.getDocumentLoaders();
+		this.sharedCache = options.getSharedCache();
+		this.failedLoads = options.getFailedLoadCache();
+		this.releaseResolved = options.isReleaseResolvedDocuments();
+		this.compactTrees = options.isCompactTrees();
+		// one table for the whole normalization, so names are shared across documents
+		this.symbols = options.getSymbolTable();
+		if (symbols == null && compactTrees) {
+			this.symbols = new SymbolTable();
+		}
+		if (compactTrees) {
+			this.parser = parser.withCompactTrees();
+		}
+		if (symbols != null) {
+			this.parser = parser.withSymbolTable(symbols);
+		}
+		if (options.getPrefetchThreads() > 0) {
+			this.prefetcher = new DocumentPrefetcher(options.getPrefetchThreads(), this::fetch);
+		}
 	}
 
 	public Content<E> load(String refString, Reference base, String scanState) {
@@ -51,16 +94,184 @@ public class ContentManager<E extends Enum<E> & Component> {
 		return load(ref, machine.getState(scanStateValue));
 	}
 
+	/**
+	 * Obtain the content for a reference, loading its document if necessary.
+	 * <p>
+	 * When resolved documents are being released, the returned content is held
+	 * until it is passed to {@link #release(Content)}.
+	 */
 	public Content<E> load(Reference ref, State<E> scanState) {
-		if (contentCache.containsKey(ref)) {
-			return contentCache.get(ref);
-		} else if (!ref.isValid()) {
-			return createInvalidContent(ref, ref.getInvalidReason());
+		Content<E> content = loadContent(ref, scanState);
+		if (releaseResolved && content.isValid()) {
+			synchronized (this) {
+				holds.merge(content.getRef().getUrlRef(), 1, Integer::sum);
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * Obtain the content for a reference without waiting for its document to be
+	 * fetched and parsed.
+	 * <p>
+	 * Concurrent requests for references into the same document, whether made
+	 * with this method or {@link #load(Reference, State)}, share a single fetch.
+	 * The document's content is created on a prefetch thread. The returned future
+	 * always completes normally; a document that can't be loaded yields invalid
+	 * content, just as with {@link #load(Reference, State)}.
+	 */
+	public CompletableFuture<Content<E>> loadAsync(Reference ref, State<E> scanState) {
+		Reference rootRef = ref.getUrlRef();
+		CompletableFuture<Content<E>> claim = new CompletableFuture<>();
+		CompletableFuture<Content<E>> inFlight = null;
+		boolean available;
+		synchronized (this) {
+			available = contentCache.containsKey(ref) || contentCache.containsKey(rootRef) || !ref.isValid();
+			if (!available) {
+				inFlight = docsInFlight.putIfAbsent(rootRef, claim);
+			}
+		}
+		if (available) {
+			return CompletableFuture.completedFuture(load(ref, scanState));
+		} else if (inFlight != null) {
+			return inFlight.thenApply(d -> load(ref, scanState));
+		}
+		State<E> docState = ref.equals(rootRef) ? scanState : null;
+		// The document's content is created by whichever thread completes the fetch -
+		// normally a prefetch thread - which then collects the fetch without waiting
+		getPrefetcher().fetchAsync(rootRef.getUrl()).whenComplete((tree, e) -> completeDoc(rootRef, docState, claim));
+		return claim.thenApply(d -> load(ref, scanState));
+	}
+
+	/**
+	 * Signal that a loaded content item is no longer needed by the caller.
+	 * <p>
+	 * This matters only when resolved documents are being released: once every
+	 * content item obtained from a document has been released, and every
+	 * reference into the document counted by {@link #expectReference(Reference)}
+	 * has been resolved, the document tree and all content items drawn from it
+	 * are dropped. The document is loaded again if it's needed later.
+	 */
+	public synchronized void release(Content<E> content) {
+		if (!releaseResolved || !content.isValid()) {
+			return;
+		}
+		Reference docRef = content.getRef().getUrlRef();
+		if (decrement(holds, docRef)) {
+			evictIfUnused(docRef);
+		}
+	}
+
+	/**
+	 * Count a reference that a scan has found, and that will be resolved by a
+	 * later scan.
+	 * <p>
+	 * When resolved documents are being released, a document is kept until all
+	 * the references counted against it have been resolved, so a document that
+	 * is referenced many times is loaded once, rather than once per reference.
+	 *
+	 * @param ref
+	 *            the reference
+	 */
+	public synchronized void expectReference(Reference ref) {
+		if (releaseResolved && ref.getUrl() != null) {
+			outstanding.merge(ref.getUrlRef(), 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Signal that a reference counted by {@link #expectReference(Reference)} has
+	 * been resolved
+	 *
+	 * @param ref
+	 *            the reference
+	 */
+	public synchronized void referenceResolved(Reference ref) {
+		if (!releaseResolved || ref.getUrl() == null) {
+			return;
+		}
+		Reference docRef = ref.getUrlRef();
+		if (decrement(outstanding, docRef)) {
+			evictIfUnused(docRef);
+		}
+	}
+
+	// true if the count has just dropped to zero
+	private static boolean decrement(Map<Reference, Integer> counts, Reference docRef) {
+		Integer count = counts.get(docRef);
+		if (count == null) {
+			return false;
+		} else if (count > 1) {
+			counts.put(docRef, count - 1);
+			return false;
+		} else {
+			counts.remove(docRef);
+			return true;
+		}
+	}
+
+	private void evictIfUnused(Reference docRef) {
+		if (holds.containsKey(docRef) || outstanding.containsKey(docRef)) {
+			return;
+		}
+		Set<Reference> refs = contentRefsByDoc.remove(docRef);
+		if (refs != null) {
+			for (Reference ref : refs) {
+				contentCache.remove(ref);
+			}
+			releasedCount++;
+		}
+	}
+
+	/**
+	 * Drop prefetched documents that have not been asked for.
+	 * <p>
+	 * Once every reference reachable from the models has been resolved, any
+	 * prefetched tree still waiting to be collected was a wrong guess, and would
+	 * otherwise be held for the life of this manager.
+	 *
+	 * @return number of prefetched documents dropped
+	 */
+	public int discardPrefetched() {
+		DocumentPrefetcher current;
+		synchronized (this) {
+			current = prefetcher;
+		}
+		return current != null ? current.discardSpeculative() : 0;
+	}
+
+	/**
+	 * @return the table shared by all documents parsed for this normalization,
+	 *         which reports the memory it saved; null if symbols aren't interned
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+
+	/**
+	 * @return number of times a document has been released
+	 */
+	public synchronized int getReleasedCount() {
+		return releasedCount;
+	}
+
+	// The manager's lock is never held while a document is fetched, so a slow
+	// fetch doesn't hold up other threads' loads of documents already available
+	private Content<E> loadContent(Reference ref, State<E> scanState) {
+		synchronized (this) {
+			if (contentCache.containsKey(ref)) {
+				return contentCache.get(ref);
+			} else if (!ref.isValid()) {
+				return createInvalidContent(ref, ref.getInvalidReason());
+			}
 		}
 		Content<E> doc = loadDoc(ref, ref.equals(ref.getUrlRef()) ? scanState : null);
-		if (contentCache.containsKey(ref)) {
-			return contentCache.get(ref);
+		synchronized (this) {
+			return contentCache.containsKey(ref) ? contentCache.get(ref) : createSubtreeContent(ref, doc, scanState);
 		}
+	}
+
+	private Content<E> createSubtreeContent(Reference ref, Content<E> doc, State<E> scanState) {
 		if (doc.isValid()) {
 			JsonPointer pointer = ref.getPointer();
 			if (pointer.matches()) {
@@ -80,6 +291,14 @@ public class ContentManager<E extends Enum<E> & Component> {
 		}
 	}
 
+	/**
+	 * @return the loaded content for the whole document containing the given
+	 *         reference, or null if there is none
+	 */
+	synchronized Content<E> getLoadedDocument(Reference ref) {
+		return contentCache.get(ref.getUrlRef());
+	}
+
 	public LocalizedContent localize(JsonNode node, Component component, JsonPointer pointer, Reference base) {
 		return localizer.localize(node, component, pointer, base);
 	}
@@ -105,11 +324,14 @@ public class ContentManager<E extends Enum<E> & Component> {
 		return localizer.getLocalizedContent(ref);
 	}
 
-	public Content<E> createContent(Reference ref, JsonNode tree, State<E> scanState) {
+	public synchronized Content<E> createContent(Reference ref, JsonNode tree, State<E> scanState) {
 		if (contentCache.containsKey(ref)) {
 			throw duplicateContent(ref);
 		} else {
 			contentCache.put(ref, new Content<E>(ref, tree, scanState, this, options));
+			if (releaseResolved) {
+				contentRefsByDoc.computeIfAbsent(ref.getUrlRef(), r -> new HashSet<>()).add(ref);
+			}
 		}
 		return contentCache.get(ref);
 	}
@@ -118,7 +340,7 @@ public class ContentManager<E extends Enum<E> & Component> {
 		return createInvalidContent(ref, ref.getInvalidReason());
 	}
 
-	public Content<E> createInvalidContent(Reference ref, String invalidReason) {
+	public synchronized Content<E> createInvalidContent(Reference ref, String invalidReason) {
 		if (contentCache.containsKey(ref)) {
 			throw duplicateContent(ref);
 		} else {
@@ -127,49 +349,129 @@ public class ContentManager<E extends Enum<E> & Component> {
 		return contentCache.get(ref);
 	}
 
+	/**
+	 * @return URLs of all the documents this manager has loaded
+	 */
+	public Collection<URL> getLoadedUrls() {
+		return Collections.unmodifiableCollection(loadedUrls.values());
+	}
+
+	/**
+	 * Set a listener told of each document URL just before the document is
+	 * fetched, possibly on a prefetch thread.
+	 */
+	void setFetchListener(Consumer<URL> listener) {
+		this.fetchListener = listener;
+	}
+
 	public StateMachine<E> getMachine() {
 		return machine;
 	}
 
+	// At most one load of a document is underway at a time, whether it was started
+	// by load or loadAsync; any other load of the document waits for it
 	private Content<E> loadDoc(Reference ref, State<E> scanState) {
-		String text;
 		Reference rootRef = ref.getUrlRef();
-		if (contentCache.containsKey(rootRef)) {
-			return contentCache.get(rootRef);
+		CompletableFuture<Content<E>> claim = new CompletableFuture<>();
+		CompletableFuture<Content<E>> inFlight;
+		synchronized (this) {
+			if (contentCache.containsKey(rootRef)) {
+				return contentCache.get(rootRef);
+			}
+			inFlight = docsInFlight.putIfAbsent(rootRef, claim);
 		}
+		return inFlight != null ? inFlight.join() : completeDoc(rootRef, scanState, claim);
+	}
+
+	// Fetch a document whose load has been claimed in docsInFlight, and create its
+	// content. The claim is dropped only once the content is in the content cache,
+	// so a load that starts in the meantime finds one or the other.
+	private Content<E> completeDoc(Reference rootRef, State<E> scanState, CompletableFuture<Content<E>> claim) {
 		try {
-			text = readFromUrl(ref.getUrl());
-			JsonNode tree = loadTree(text);
-			return createContent(rootRef, tree, scanState);
-		} catch (Exception e) {
-			// The YAML scanner produces exceptions that are very clumsy: toString is
-			// overridden and provides a multi-line explanation of the parse error. Not good
-			// for summaries, and out of alignment with default exception behavior. So we
-			// provide our own summary in that case.
-			rootRef.markInvalid(
-					e instanceof ScannerException ? "File does not contain valid YAML content" : e.toString(), e);
-			return createInvalidContent(rootRef);
-		}
-	}
-
-	private String readFromUrl(URL url) throws IOException {
-		String content = "";
-		try (BufferedReader reader = new BufferedReader(
-				new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
-			content = reader.lines().collect(Collectors.joining("\n"));
+			DocumentPrefetcher current;
+			synchronized (this) {
+				current = prefetcher;
+			}
+			JsonNode tree = null;
+			Exception failure = null;
+			try {
+				tree = current != null ? current.fetch(rootRef.getUrl()) : fetch(rootRef.getUrl());
+			} catch (Exception e) {
+				failure = e;
+			}
+			Content<E> doc;
+			synchronized (this) {
+				if (contentCache.containsKey(rootRef)) {
+					doc = contentCache.get(rootRef);
+				} else if (failure == null) {
+					doc = createContent(rootRef, tree, scanState);
+				} else {
+					// The YAML scanner produces exceptions that are very clumsy: toString is
+					// overridden and provides a multi-line explanation of the parse error. Not
+					// good for summaries, and out of alignment with default exception behavior.
+					// So we provide our own summary in that case.
+					rootRef.markInvalid(failure instanceof ScannerException
+							? "File does not contain valid YAML content" : failure.toString(), failure);
+					doc = createInvalidContent(rootRef);
+				}
+				docsInFlight.remove(rootRef);
+			}
+			claim.complete(doc);
+			return doc;
+		} catch (Throwable t) {
+			synchronized (this) {
+				docsInFlight.remove(rootRef);
+			}
+			claim.completeExceptionally(t);
+			throw t;
 		}
-		return content;
 	}
 
-	private static ObjectMapper jsonMapper = new ObjectMapper();
-	private static ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+	private synchronized DocumentPrefetcher getPrefetcher() {
+		if (prefetcher == null) {
+			this.prefetcher = new DocumentPrefetcher(Option.DEFAULT_PREFETCH_THREADS, this::fetch, false);
+		}
+		return prefetcher;
+	}
 
-	private static JsonNode loadTree(String text) throws IOException {
-		if (text.trim().startsWith("{")) {
-			return jsonMapper.readTree(text);
-		} else {
-			return yamlMapper.readTree(text);
+	private JsonNode fetch(URL url) throws Exception {
+		loadedUrls.put(url.toString(), url);
+		if (fetchListener != null) {
+			fetchListener.accept(url);
+		}
+		// in-memory documents belong to this normalization, so they're neither taken
+		// from nor left in the caches shared with other normalizations
+		boolean inMemory = loaders.hasDocument(url);
+		SharedDocumentCache trees = inMemory ? null : sharedCache;
+		FailedLoadCache failures = inMemory ? null : failedLoads;
+		JsonNode tree = trees != null ? trees.get(url) : null;
+		if (tree == null) {
+			Exception failure = failures != null ? failures.get(url) : null;
+			if (failure != null) {
+				throw failure;
+			}
+			// with prefetching, references spotted while the document is read are
+			// fetched without waiting for the parse to finish
+			DocumentParser docParser = prefetcher != null && prefetcher.isFollowingReferences()
+					? parser.withReferenceListener(refString -> prefetcher.prefetch(refString, url)) : parser;
+			try {
+				tree = loaders.load(url, docParser);
+			} catch (IOException | RuntimeException e) {
+				if (failures != null) {
+					failures.put(url, e);
+				}
+				throw e;
+			}
+			// trees from the parse and HTTP caches are not compact
+			if (compactTrees && tree != null && !(tree instanceof CompactNode)) {
+				tree = new CompactTreeBuilder(symbols).compact(tree);
+			}
+			if (trees != null && tree != null) {
+				// share the cached tree, rather than holding a second copy
+				tree = trees.put(url, tree);
+			}
 		}
+		return tree;
 	}
 
 	private IllegalStateException duplicateContent(Reference ref) {
@@ -0,0 +1,249 @@
+package com.reprezen.kaizen.normalizer;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Fetches and parses referenced documents ahead of the reference scans that
+ * will need them.
+ * <p>
+ * Whenever a document is parsed, the distinct external URLs appearing in its
+ * <code>$ref</code> values are collected, and any that have not yet been
+ * requested are loaded and parsed on a bounded pool of background threads. The
+ * same happens for each prefetched document in turn, so the entire reference
+ * graph is fetched in parallel. When a scan reaches a reference, the parsed
+ * tree is typically already available.
+ * <p>
+ * The fetcher may also report references it spots in the raw bytes of a
+ * document while it's still being parsed (see {@link #prefetch(String, URL)}),
+ * so prefetches of large documents' references needn't wait for the parse to
+ * finish. The walk of the parsed tree remains the authority; a wrongly guessed
+ * reference only costs a wasted load.
+ * <p>
+ * Only the fetch and parse are done in the background. Creation of
+ * {@link Content} objects, and everything else in the {@link ContentManager},
+ * still happens on the scanning thread. A prefetch that turns out not to be
+ * needed costs nothing but the wasted load.
+ * <p>
+ * The same machinery serves {@link ContentManager#loadAsync}: at most one fetch
+ * of a given document is ever underway, and it's shared by everyone who asks
+ * for that document while it's in progress. A prefetcher created without
+ * reference-following does only that.
+ * <p>
+ * Prefetched trees are held until they're collected by {@link #fetch(URL)}.
+ * Those that never will be, because a guessed reference was wrong or the
+ * document was already loaded some other way, are dropped by
+ * {@link #discardSpeculative()}.
+ */
+class DocumentPrefetcher {
+
+	private ThreadPoolExecutor executor;
+	private DocumentFetcher fetcher;
+	private boolean followReferences;
+	private Map<String, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+	private Set<String> requested = ConcurrentHashMap.newKeySet();
+	// pending fetches started by prefetch, which no one has asked for yet
+	private Set<String> speculative = ConcurrentHashMap.newKeySet();
+
+	public DocumentPrefetcher(int threads, DocumentFetcher fetcher) {
+		this(threads, fetcher, true);
+	}
+
+	public DocumentPrefetcher(int threads, DocumentFetcher fetcher, boolean followReferences) {
+		this.fetcher = fetcher;
+		this.followReferences = followReferences;
+		// idle threads die off, so there's no need to shut down the executor when the
+		// content manager is discarded
+		this.executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new PrefetchThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Obtain the parsed tree for the given document URL, waiting for a prefetch
+	 * that is already underway, or fetching it on the calling thread otherwise.
+	 *
+	 * @param url
+	 *            URL of the document, without fragment
+	 * @return parsed document
+	 * @throws Exception
+	 *             whatever exception was thrown by the fetch
+	 */
+	public JsonNode fetch(URL url) throws Exception {
+		// claiming a pending fetch and marking the document requested happen
+		// together, so a prefetch can't slip in between and start a second fetch
+		List<CompletableFuture<JsonNode>> claimed = new ArrayList<>(1);
+		pending.compute(url.toString(), (urlString, future) -> {
+			if (future != null) {
+				claimed.add(future);
+				speculative.remove(urlString);
+			}
+			requested.add(urlString);
+			return null;
+		});
+		CompletableFuture<JsonNode> future = claimed.isEmpty() ? null : claimed.get(0);
+		if (future != null) {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				throw cause instanceof Exception ? (Exception) cause : e;
+			}
+		} else {
+			return fetchAndPrefetch(url);
+		}
+	}
+
+	/**
+	 * Obtain a future for the parsed tree of the given document URL, joining a
+	 * fetch that is already underway, or starting one in the background
+	 * otherwise.
+	 * <p>
+	 * The completed future remains available to {@link #fetch(URL)}, which should
+	 * eventually be called to collect it.
+	 *
+	 * @param url
+	 *            URL of the document, without fragment
+	 * @return future parsed document
+	 */
+	public CompletableFuture<JsonNode> fetchAsync(URL url) {
+		return pending.compute(url.toString(), (urlString, future) -> {
+			speculative.remove(urlString);
+			requested.add(urlString);
+			return future != null ? future : submit(url);
+		});
+	}
+
+	/**
+	 * Drop the results of prefetches that no one has asked for.
+	 * <p>
+	 * Fetches still underway are left to finish, but their results are dropped as
+	 * well. A document that turns out to be needed after all is fetched again.
+	 *
+	 * @return number of prefetches dropped
+	 */
+	public int discardSpeculative() {
+		AtomicInteger count = new AtomicInteger();
+		for (String urlString : speculative) {
+			// counted only if a future is actually removed; computeIfPresent returns
+			// null for an absent key as well
+			pending.computeIfPresent(urlString, (key, future) -> {
+				if (speculative.remove(key)) {
+					count.incrementAndGet();
+					return null;
+				}
+				return future;
+			});
+		}
+		return count.get();
+	}
+
+	/**
+	 * Start loading a document that a document being parsed appears to
+	 * reference, unless it's already been requested
+	 *
+	 * @param refString
+	 *            a <code>$ref</code> value spotted in the document
+	 * @param base
+	 *            URL of the document being parsed
+	 */
+	public void prefetch(String refString, URL base) {
+		if (followReferences) {
+			prefetch(new Reference(refString, new Reference(base)), base.toString());
+		}
+	}
+
+	public boolean isFollowingReferences() {
+		return followReferences;
+	}
+
+	private void prefetch(Reference ref, String baseUrlString) {
+		URL url = ref.getUrl();
+		String urlString = ref.getUrlString();
+		if (url != null && !urlString.equals(baseUrlString) && !requested.contains(urlString)) {
+			pending.compute(urlString, (key, future) -> {
+				if (future == null && requested.add(key)) {
+					speculative.add(key);
+					return submit(url);
+				}
+				return future;
+			});
+		}
+	}
+
+	private CompletableFuture<JsonNode> submit(URL url) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return fetchAndPrefetch(url);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	private JsonNode fetchAndPrefetch(URL url) throws Exception {
+		JsonNode tree = fetcher.fetch(url);
+		if (followReferences) {
+			prefetchReferences(tree, new Reference(url));
+		}
+		return tree;
+	}
+
+	private void prefetchReferences(JsonNode tree, Reference base) {
+		for (Reference ref : getReferences(tree, base)) {
+			prefetch(ref, base.getUrlString());
+		}
+	}
+
+	private List<Reference> getReferences(JsonNode tree, Reference base) {
+		List<Reference> refs = new ArrayList<>();
+		collectReferences(tree, base, refs);
+		return refs;
+	}
+
+	private void collectReferences(JsonNode node, Reference base, List<Reference> refs) {
+		Optional<String> refString = Reference.getRefString(node);
+		if (refString.isPresent()) {
+			refs.add(new Reference(refString.get(), base));
+		}
+		if (node != null && node.isContainerNode()) {
+			for (Iterator<JsonNode> iter = node.elements(); iter.hasNext();) {
+				collectReferences(iter.next(), base, refs);
+			}
+		}
+	}
+
+	/**
+	 * The operation that actually retrieves and parses a document
+	 */
+	@FunctionalInterface
+	public interface DocumentFetcher {
+		JsonNode fetch(URL url) throws Exception;
+	}
+
+	private static class PrefetchThreadFactory implements ThreadFactory {
+		private static AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "kaizen-prefetch-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.reprezen.kaizen.normalizer;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import com.reprezen.kaizen.normalizer.SharedDocumentCache.Stamp;
+
+/**
+ * Cache of failed document loads, shared by any number of normalizations in
+ * the same process.
+ * <p>
+ * When a document can't be retrieved or parsed, the failure is recorded, and
+ * for the configured time-to-live any further attempt to load the document
+ * fails immediately with the same exception, rather than waiting out another
+ * timeout or failed parse. A failure recorded for a local file is dropped as
+ * soon as the file appears or changes. Loads that fail because they were
+ * interrupted are not recorded.
+ */
+public class FailedLoadCache {
+
+	public static final long DEFAULT_MAX_ENTRIES = 10000;
+
+	private long ttlMillis;
+	private long maxEntries;
+	private long hits = 0;
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+	/**
+	 * @param ttlMillis
+	 *            how long a failure is remembered, in milliseconds
+	 */
+	public FailedLoadCache(long ttlMillis) {
+		this(ttlMillis, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param ttlMillis
+	 *            how long a failure is remembered, in milliseconds
+	 * @param maxEntries
+	 *            maximum number of failures remembered; the oldest are forgotten
+	 *            first
+	 */
+	public FailedLoadCache(long ttlMillis, long maxEntries) {
+		this.ttlMillis = ttlMillis;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Obtain a recorded failure
+	 *
+	 * @param url
+	 *            document URL, without fragment
+	 * @return the exception with which the last load of the document failed, or
+	 *         null if no failure is recorded, or its time-to-live has expired
+	 */
+	public Exception get(URL url) {
+		String key = url.toString();
+		Stamp stamp = Stamp.of(url);
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && (System.currentTimeMillis() >= entry.expires || !entry.stamp.equals(stamp))) {
+				entries.remove(key);
+				entry = null;
+			}
+			if (entry != null) {
+				hits++;
+				return entry.failure;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Record a failed load
+	 *
+	 * @param url
+	 *            document URL, without fragment
+	 * @param failure
+	 *            exception with which the load failed
+	 */
+	public void put(URL url, Exception failure) {
+		if (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException)) {
+			return;
+		}
+		Entry entry = new Entry(failure, System.currentTimeMillis() + ttlMillis, Stamp.of(url));
+		synchronized (this) {
+			// re-inserted, so entries stay in order of expiry
+			entries.remove(url.toString());
+			entries.put(url.toString(), entry);
+			for (Iterator<Entry> iter = entries.values().iterator(); entries.size() > maxEntries && iter.hasNext();) {
+				iter.next();
+				iter.remove();
+			}
+		}
+	}
+
+	public synchronized void invalidate(URL url) {
+		entries.remove(url.toString());
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return number of loads that failed immediately because of a recorded
+	 *         failure
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static class Entry {
+		private Exception failure;
+		private long expires;
+		private Stamp stamp;
+
+		public Entry(Exception failure, long expires, Stamp stamp) {
+			this.failure = failure;
+			this.expires = expires;
+			this.stamp = stamp;
+		}
+	}
+}
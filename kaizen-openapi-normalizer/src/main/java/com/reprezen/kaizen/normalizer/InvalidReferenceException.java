@@ -0,0 +1,41 @@
+package com.reprezen.kaizen.normalizer;
+
+/**
+ * Stand-in for an exception that made a reference invalid, restored from a
+ * reference node.
+ * <p>
+ * Only the original exception's class name and message survive in a reference
+ * node, so rather than instantiating that class reflectively, a reference read
+ * back from a node is given one of these. It carries no stack trace, and
+ * renders like the original exception.
+ */
+public class InvalidReferenceException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String exceptionClassName;
+
+	/**
+	 * @param exceptionClassName
+	 *            name of the original exception's class
+	 * @param message
+	 *            the original exception's message; may be null
+	 */
+	public InvalidReferenceException(String exceptionClassName, String message) {
+		super(message, null, false, false);
+		this.exceptionClassName = exceptionClassName;
+	}
+
+	/**
+	 * @return name of the original exception's class
+	 */
+	public String getExceptionClassName() {
+		return exceptionClassName;
+	}
+
+	@Override
+	public String toString() {
+		String message = getLocalizedMessage();
+		return message != null ? exceptionClassName + ": " + message : exceptionClassName;
+	}
+}
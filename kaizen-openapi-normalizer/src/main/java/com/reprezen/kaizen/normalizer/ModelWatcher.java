@@ -0,0 +1,245 @@
+package com.reprezen.kaizen.normalizer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.StateMachine;
+
+/**
+ * Re-normalizes a model whenever one of the local files it was built from
+ * changes.
+ * <p>
+ * Each normalization records the files that were loaded. Just before a file is
+ * read, its directory is watched and its content hash is recorded, so a change
+ * made while the model is being normalized is never missed. A file counts as
+ * changed only if its content hash differs from that recorded, so saves that
+ * don't change anything are ignored, as are changes to files the model doesn't
+ * use.
+ * <p>
+ * Pristine parsed trees are retained in a {@link SharedDocumentCache} (the one
+ * supplied with the {@link Option#SHARED_CACHE(SharedDocumentCache)} option,
+ * or an unbounded one installed in the watcher's own copy of the options). When files
+ * change, only their trees are dropped, so a re-normalization reads and parses
+ * just the edited files.
+ */
+public class ModelWatcher<E extends Enum<E> & Component> implements Closeable {
+
+	// editors often save a file in several steps; events that follow each other
+	// this closely are treated as one change
+	private static final long SETTLE_MILLIS = 50;
+
+	private StateMachine<E> machine;
+	private Options options;
+	private URL model;
+	private SharedDocumentCache treeCache;
+	private WatchService watchService;
+	// added to from prefetch threads while a normalization is in progress
+	private Map<Path, WatchKey> watchedDirs = new ConcurrentHashMap<>();
+	private Map<Path, WatchedFile> watchedFiles = new ConcurrentHashMap<>();
+	private JsonNode result = null;
+	private volatile boolean closed = false;
+
+	public ModelWatcher(StateMachine<E> machine, Options options, URL model) throws IOException {
+		this.machine = machine;
+		this.options = options.copy();
+		this.model = model;
+		this.treeCache = options.getSharedCache();
+		if (treeCache == null) {
+			this.treeCache = new SharedDocumentCache(Long.MAX_VALUE);
+			this.options.replace(Option.SHARED_CACHE(treeCache));
+		}
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Normalize the model, and start watching the files it was built from.
+	 *
+	 * @return the normalized model
+	 */
+	public synchronized JsonNode normalize() {
+		ReferenceProcessor<E> processor = new ReferenceProcessor<E>(machine, options);
+		Map<Path, WatchedFile> previous = watchedFiles;
+		Map<Path, WatchedFile> files = new ConcurrentHashMap<>();
+		processor.getContentManager().setFetchListener(url -> watch(url, previous, files));
+		this.result = processor.process(model);
+		this.watchedFiles = files;
+		unwatchUnusedDirs();
+		return result;
+	}
+
+	/**
+	 * @return the most recent normalization result
+	 */
+	public synchronized JsonNode getResult() {
+		return result;
+	}
+
+	/**
+	 * Wait for watched files to change, and re-normalize the model if any do.
+	 *
+	 * @param timeout
+	 *            how long to wait for the first file system event
+	 * @param unit
+	 *            unit of timeout
+	 * @return URLs of files whose content changed; empty if there were none, and
+	 *         the model was therefore not re-normalized
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public Set<URL> awaitChanges(long timeout, TimeUnit unit) throws InterruptedException {
+		Set<Path> touched = new LinkedHashSet<>();
+		for (WatchKey key = watchService.poll(timeout, unit); key != null; key = watchService.poll(SETTLE_MILLIS,
+				TimeUnit.MILLISECONDS)) {
+			Path dir = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.context() instanceof Path) {
+					touched.add(dir.resolve((Path) event.context()));
+				}
+			}
+			key.reset();
+		}
+		Set<URL> changed = new LinkedHashSet<>();
+		for (Path path : touched) {
+			checkChanged(path, changed);
+		}
+		if (!changed.isEmpty()) {
+			normalize();
+		}
+		return changed;
+	}
+
+	/**
+	 * Watch for changes on a background thread until the watcher is closed,
+	 * reporting each new normalization result to the given listener.
+	 *
+	 * @param listener
+	 *            receives each new result
+	 */
+	public void start(Consumer<JsonNode> listener) {
+		Thread thread = new Thread(() -> {
+			try {
+				while (!closed) {
+					if (!awaitChanges(1, TimeUnit.SECONDS).isEmpty()) {
+						listener.accept(getResult());
+					}
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+			}
+		}, "kaizen-model-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		watchService.close();
+	}
+
+	private synchronized void checkChanged(Path path, Set<URL> changed) {
+		WatchedFile file = watchedFiles.get(path);
+		if (file != null) {
+			if (!Arrays.equals(hash(path), file.hash)) {
+				// hashed afresh when it's read again
+				watchedFiles.remove(path);
+				treeCache.invalidate(file.url);
+				changed.add(file.url);
+			}
+		}
+	}
+
+	// A file's directory is watched, and its hash taken, before the file is read.
+	// A file that's still in the shared cache keeps the hash taken when it was
+	// read.
+	private void watch(URL url, Map<Path, WatchedFile> previous, Map<Path, WatchedFile> files) {
+		Path path = getPath(url);
+		if (path != null) {
+			watchDir(path.getParent());
+			files.computeIfAbsent(path, p -> previous.containsKey(p) ? previous.get(p) : new WatchedFile(url, hash(p)));
+		}
+	}
+
+	private void watchDir(Path dir) {
+		watchedDirs.computeIfAbsent(dir, d -> {
+			try {
+				return d.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+			} catch (IOException e) {
+				// can't watch this directory; its files just won't trigger re-normalization
+				return null;
+			}
+		});
+	}
+
+	private void unwatchUnusedDirs() {
+		Set<Path> dirs = new HashSet<>();
+		for (Path path : watchedFiles.keySet()) {
+			dirs.add(path.getParent());
+		}
+		for (Iterator<Map.Entry<Path, WatchKey>> iter = watchedDirs.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<Path, WatchKey> entry = iter.next();
+			if (!dirs.contains(entry.getKey())) {
+				entry.getValue().cancel();
+				iter.remove();
+			}
+		}
+	}
+
+	private static Path getPath(URL url) {
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return Paths.get(url.toURI()).toAbsolutePath().normalize();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	// null for a file that can't be read, e.g. because it has been deleted
+	private static byte[] hash(Path path) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(path));
+		} catch (IOException e) {
+			return null;
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class WatchedFile {
+		private URL url;
+		private byte[] hash;
+
+		public WatchedFile(URL url, byte[] hash) {
+			this.url = url;
+			this.hash = hash;
+		}
+	}
+}
@@ -5,9 +5,16 @@ import static com.reprezen.kaizen.normalizer.Option.OptionType.INLINE;
 import static com.reprezen.kaizen.normalizer.Option.OptionType.RETAIN;
 import static com.reprezen.kaizen.normalizer.Option.OptionType.RETENTION_SCOPE;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableSet;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.loader.HttpCache;
+import com.reprezen.kaizen.normalizer.loader.InMemoryDocumentLoader;
+import com.reprezen.kaizen.normalizer.util.SymbolTable;
 import com.reprezen.kaizen.normalizer.v2.V2State;
 import com.reprezen.kaizen.normalizer.v3.V3State;
 
@@ -150,6 +157,75 @@ public class Option {
 	public static final Option FIX_MISSING_TYPES = new Option(OptionType.FIX_MISSING_TYPES);
 	public static final Option ADD_JSON_POINTERS = new Option(OptionType.ADD_JSON_POINTERS);
 	public static final Option FIX_X_EXAMPLES = new Option(OptionType.FIX_X_EXAMPLES);
+	public static final Option SKIP_EXAMPLES = new Option(OptionType.SKIP_EXAMPLES);
+
+	public static final int DEFAULT_PREFETCH_THREADS = 4;
+	public static final Option PREFETCH = PREFETCH(DEFAULT_PREFETCH_THREADS);
+
+	public static Option PREFETCH(int threads) {
+		return new Option(OptionType.PREFETCH, threads);
+	}
+
+	public static final Option RELEASE_RESOLVED_DOCUMENTS = new Option(OptionType.RELEASE_RESOLVED_DOCUMENTS);
+	// Trees returned by Content.at may then be compact nodes, which are read-only.
+	// A compact container is equal only to another compact container, never to a
+	// Jackson container with the same content, since Jackson's containers can't be
+	// made to compare equal to it in return. To compare content with Jackson
+	// trees, use Content.getTree, which always returns a Jackson tree
+	public static final Option COMPACT_TREES = new Option(OptionType.COMPACT_TREES);
+	public static final Option INTERN_SYMBOLS = INTERN_SYMBOLS(SymbolTable.DEFAULT_MAX_VALUE_LENGTH);
+
+	public static Option INTERN_SYMBOLS(int maxValueLength) {
+		return new Option(OptionType.INTERN_SYMBOLS, maxValueLength);
+	}
+
+	public static Option INTERN_SYMBOLS(SymbolTable symbols) {
+		return new Option(OptionType.INTERN_SYMBOLS, symbols);
+	}
+
+	public static Option PARSE_CACHE(Path dir) {
+		return PARSE_CACHE(new ParseCache(dir));
+	}
+
+	public static Option PARSE_CACHE(ParseCache cache) {
+		return new Option(OptionType.PARSE_CACHE, cache);
+	}
+
+	public static Option SHARED_CACHE(long maxWeight) {
+		return SHARED_CACHE(new SharedDocumentCache(maxWeight));
+	}
+
+	public static Option SHARED_CACHE(SharedDocumentCache cache) {
+		return new Option(OptionType.SHARED_CACHE, cache);
+	}
+
+	public static Option HTTP_CACHE(Path dir) {
+		return HTTP_CACHE(new HttpCache(dir));
+	}
+
+	public static Option HTTP_CACHE(HttpCache cache) {
+		return new Option(OptionType.HTTP_CACHE, cache);
+	}
+
+	public static Option FAILED_LOAD_CACHE(long ttlMillis) {
+		return FAILED_LOAD_CACHE(new FailedLoadCache(ttlMillis));
+	}
+
+	public static Option FAILED_LOAD_CACHE(FailedLoadCache cache) {
+		return new Option(OptionType.FAILED_LOAD_CACHE, cache);
+	}
+
+	public static Option IN_MEMORY_DOCUMENTS(Map<String, ByteBuffer> documents) {
+		return IN_MEMORY_DOCUMENTS(new InMemoryDocumentLoader().putAll(documents));
+	}
+
+	public static Option IN_MEMORY_DOCUMENTS(InMemoryDocumentLoader documents) {
+		return new Option(OptionType.IN_MEMORY_DOCUMENTS, documents);
+	}
+
+	public static Option DOCUMENT_LOADERS(DocumentLoaderRegistry loaders) {
+		return new Option(OptionType.DOCUMENT_LOADERS, loaders);
+	}
 
 	public static final Option ORDERING_AS_DECLARED = new Option(OptionType.ORDERING, OrderingScheme.AS_DECLARED);
 	public static final Option ORDERING_SORTED = new Option(OptionType.ORDERING, OrderingScheme.SORTED);
@@ -213,7 +289,8 @@ public class Option {
 			FIX_MISSING_TYPES, //
 			ORDERING_AS_DECLARED, //
 			RETAIN_NO_EXTENSION_DATA, //
-			FIX_X_EXAMPLES //
+			FIX_X_EXAMPLES, //
+			SKIP_EXAMPLES //
 	};
 
 	public static final Option[] MINIMAL_OPTIONS = new Option[] { //
@@ -243,9 +320,21 @@ public class Option {
 		RETAIN_POSITION_VALUES, // whether to retain position values
 		FIX_X_EXAMPLES, // whether to convert non-text response examples to text
 		RETAIN_EXTENSION_DATA, // vendor-extension data to retain
-		DEFER_EXTENSION_DATA_REMOVAL // whether normalizer itself removes non-retained extension data (alternative is
+		DEFER_EXTENSION_DATA_REMOVAL, // whether normalizer itself removes non-retained extension data (alternative is
 										// that post-processing will do this. This is the case, for example, with
 										// swaggernorm gentemplate)
+		PREFETCH, // number of threads used to load referenced documents before scans reach them
+		PARSE_CACHE, // on-disk cache of parsed documents, shared across runs
+		DOCUMENT_LOADERS, // document loaders by URL scheme, replacing the standard loaders (and their PARSE_CACHE and
+							// HTTP_CACHE use)
+		SHARED_CACHE, // in-memory cache of parsed documents, shared by normalizations in this process
+		RELEASE_RESOLVED_DOCUMENTS, // drop referenced documents once no reference into them is being resolved
+		HTTP_CACHE, // on-disk cache of documents retrieved over HTTP, revalidated with conditional requests
+		FAILED_LOAD_CACHE, // failed document loads, remembered for a while by normalizations in this process
+		IN_MEMORY_DOCUMENTS, // documents served from memory, whatever their URLs, in preference to any loader
+		COMPACT_TREES, // hold loaded documents as compact read-only trees until they need to be altered
+		INTERN_SYMBOLS, // share field names and short values across all documents loaded by a normalization
+		SKIP_EXAMPLES // drop example payloads from loaded documents before they're copied, walked or written
 	}
 
 	public enum RetentionScopeType {
@@ -13,24 +13,31 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.reprezen.kaizen.normalizer.Option.ExtensionData;
 import com.reprezen.kaizen.normalizer.Option.HoistType;
 import com.reprezen.kaizen.normalizer.Option.OptionType;
 import com.reprezen.kaizen.normalizer.Option.OrderingScheme;
 import com.reprezen.kaizen.normalizer.Option.RetentionScopeType;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.loader.HttpCache;
+import com.reprezen.kaizen.normalizer.loader.InMemoryDocumentLoader;
+import com.reprezen.kaizen.normalizer.util.SymbolTable;
 import com.reprezen.kaizen.normalizer.v2.V2State;
 import com.reprezen.kaizen.normalizer.v3.V3State;
 
 public class Options {
 	private final Map<Option.OptionType, Object> options = Maps.newHashMap();
 	private Reference topRef = null;
-	private final List<String> inScopeUrlStrings = Lists.newArrayList();
+	// keyed by canonical URL string, so scope checks need neither URLs nor list scans
+	private final Set<String> inScopeUrlStrings = Sets.newHashSet();
 
 	public Options(Option... options) {
 		for (Option option : options) {
@@ -42,6 +49,16 @@ public class Options {
 		return new Options(options);
 	}
 
+	/**
+	 * @return options with the same settings as these, which can be replaced
+	 *         without affecting these
+	 */
+	public Options copy() {
+		Options copy = new Options();
+		copy.options.putAll(options);
+		return copy;
+	}
+
 	public void replace(Option option) {
 		options.put(option.getType(), option.getData());
 	}
@@ -81,9 +98,17 @@ public class Options {
 	}
 
 	public List<URL> getAdditionalFileUrls() {
-		List<URL> results = Lists.newArrayList();
+		return getAdditionalFileRefs().stream().map(Reference::getUrl).collect(Collectors.toList());
+	}
+
+	/**
+	 * @return references to the additional files, resolved against the top-level
+	 *         model if the scope has been resolved
+	 */
+	public List<Reference> getAdditionalFileRefs() {
+		List<Reference> results = Lists.newArrayList();
 		for (String urlString : getAdditionalFileStrings()) {
-			results.add(new Reference(fixFile(urlString), topRef).getUrl());
+			results.add(new Reference(fixFile(urlString), topRef));
 		}
 		return results;
 	}
@@ -135,10 +160,15 @@ public class Options {
 		inScopeUrlStrings.clear();
 		inScopeUrlStrings.add(topUrlString);
 		topRef = new Reference(topUrlString);
-		URL topUrl = topRef.getUrl();
-		for (URL additionalUrl : getAdditionalFileUrls()) {
-			URL resolved = new URL(topUrl, additionalUrl.toString());
-			inScopeUrlStrings.add(resolved.toString());
+		if (topRef.getUrl() == null) {
+			throw new MalformedURLException(topRef.getInvalidReason());
+		}
+		inScopeUrlStrings.add(topRef.getUrlString());
+		for (Reference additionalRef : getAdditionalFileRefs()) {
+			if (additionalRef.getUrl() == null) {
+				throw new MalformedURLException(additionalRef.getInvalidReason());
+			}
+			inScopeUrlStrings.add(additionalRef.getUrlString());
 		}
 	}
 
@@ -147,6 +177,10 @@ public class Options {
 				|| inScopeUrlStrings.contains(urlString);
 	}
 
+	public boolean isInScope(Reference ref) {
+		return isUrlInScope(ref.getUrlString());
+	}
+
 	public boolean isHoistMediaTypes() {
 		return optionDataHasValue(HOIST, HoistType.MEDIA_TYPE) && !isDoNotNormalize();
 	}
@@ -175,6 +209,14 @@ public class Options {
 		return isOptionSet(OptionType.FIX_MISSING_TYPES) && !isDoNotNormalize();
 	}
 
+	public boolean isReleaseResolvedDocuments() {
+		return isOptionSet(OptionType.RELEASE_RESOLVED_DOCUMENTS);
+	}
+
+	public boolean isCompactTrees() {
+		return isOptionSet(OptionType.COMPACT_TREES);
+	}
+
 	public boolean isAddJsonPointers() {
 		return isOptionSet(OptionType.ADD_JSON_POINTERS) && !isDoNotNormalize();
 	}
@@ -191,6 +233,10 @@ public class Options {
 		return isOptionSet(OptionType.FIX_X_EXAMPLES) && !isDoNotNormalize();
 	}
 
+	public boolean isSkipExamples() {
+		return isOptionSet(OptionType.SKIP_EXAMPLES) && !isDoNotNormalize();
+	}
+
 	public boolean isRetainAllExtensionData() {
 		return isRetainOrderingExtensionData() && isRetainPointerExtensionData() && isRetainFileExtensionData()
 				&& isRetainTypeNameExtensionData() && isRetainBadRefExtensionData();
@@ -222,6 +268,57 @@ public class Options {
 		return isOptionSet(OptionType.DEFER_EXTENSION_DATA_REMOVAL);
 	}
 
+	public int getPrefetchThreads() {
+		Object data = options.get(OptionType.PREFETCH);
+		return data instanceof Integer ? (Integer) data : 0;
+	}
+
+	public ParseCache getParseCache() {
+		Object data = options.get(OptionType.PARSE_CACHE);
+		return data instanceof ParseCache ? (ParseCache) data : null;
+	}
+
+	public SharedDocumentCache getSharedCache() {
+		Object data = options.get(OptionType.SHARED_CACHE);
+		return data instanceof SharedDocumentCache ? (SharedDocumentCache) data : null;
+	}
+
+	public FailedLoadCache getFailedLoadCache() {
+		Object data = options.get(OptionType.FAILED_LOAD_CACHE);
+		return data instanceof FailedLoadCache ? (FailedLoadCache) data : null;
+	}
+
+	public HttpCache getHttpCache() {
+		Object data = options.get(OptionType.HTTP_CACHE);
+		return data instanceof HttpCache ? (HttpCache) data : null;
+	}
+
+	/**
+	 * @return the table supplied with {@link Option#INTERN_SYMBOLS(SymbolTable)},
+	 *         else a new table if symbols are to be interned, else null
+	 */
+	public SymbolTable getSymbolTable() {
+		Object data = options.get(OptionType.INTERN_SYMBOLS);
+		if (data instanceof SymbolTable) {
+			return (SymbolTable) data;
+		} else {
+			return data instanceof Integer ? new SymbolTable((Integer) data) : null;
+		}
+	}
+
+	public InMemoryDocumentLoader getInMemoryDocuments() {
+		Object data = options.get(OptionType.IN_MEMORY_DOCUMENTS);
+		return data instanceof InMemoryDocumentLoader ? (InMemoryDocumentLoader) data : null;
+	}
+
+	public DocumentLoaderRegistry getDocumentLoaders() {
+		Object data = options.get(OptionType.DOCUMENT_LOADERS);
+		DocumentLoaderRegistry loaders = data instanceof DocumentLoaderRegistry ? (DocumentLoaderRegistry) data
+				: DocumentLoaderRegistry.standard(getParseCache(), getHttpCache());
+		InMemoryDocumentLoader documents = getInMemoryDocuments();
+		return documents != null ? loaders.withDocuments(documents) : loaders;
+	}
+
 	public boolean isOptionSet(OptionType optionType) {
 		Object data = options.get(optionType);
 		if (data != null && data instanceof Boolean) {
@@ -0,0 +1,200 @@
+package com.reprezen.kaizen.normalizer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.CacheFiles;
+
+/**
+ * On-disk cache of parsed documents, shared across normalizer runs.
+ * <p>
+ * Parsed trees are stored in the Smile binary encoding, which Jackson reads far
+ * faster than it can parse YAML. Each entry is keyed by the canonical URL of
+ * the source file, and records the file's size, modification time and a SHA-1
+ * hash of its content. An entry whose size and modification time match the
+ * file is used without reading the file's content, so a warm run costs little
+ * more than reading the entries. If only the modification time differs, the
+ * file's content is hashed, and the entry is used if the hash still matches;
+ * its modification time is then refreshed.
+ * <p>
+ * Only local files are cached. Problems reading or writing cache entries are
+ * never reported; they just result in cache misses.
+ */
+public class ParseCache {
+
+	private static final int FORMAT_VERSION = 1;
+	private static final String ENTRY_SUFFIX = ".sml";
+
+	private Path dir;
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	public ParseCache(Path dir) {
+		this.dir = dir;
+	}
+
+	public Path getDir() {
+		return dir;
+	}
+
+	/**
+	 * Compute the cache key for a local file
+	 *
+	 * @param url
+	 *            canonical URL of the file
+	 * @param path
+	 *            path of the file
+	 * @param content
+	 *            the file's content, hashed only if the key's hash is needed; the
+	 *            buffer's position is not disturbed
+	 * @return the key
+	 * @throws IOException
+	 *             if the file's attributes can't be read
+	 */
+	public Key key(URL url, Path path, ByteBuffer content) throws IOException {
+		return new Key(url.toString(), content.remaining(), Files.getLastModifiedTime(path).toMillis(),
+				content.duplicate());
+	}
+
+	/**
+	 * Retrieve a cached tree
+	 *
+	 * @param key
+	 *            key for the source file in its current state
+	 * @return the cached tree, or null if there's no usable entry
+	 */
+	public JsonNode get(Key key) {
+		Path entry = getEntryPath(key);
+		JsonNode tree = null;
+		boolean touched = false;
+		if (Files.isRegularFile(entry)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+				Key entryKey = Key.read(in);
+				if (entryKey.matches(key)) {
+					tree = CacheFiles.smileMapper.readTree(in);
+					touched = entryKey.getModified() != key.getModified();
+				}
+			} catch (IOException e) {
+				tree = null;
+			}
+		}
+		if (tree != null) {
+			if (touched) {
+				// same content, so just record the new modification time
+				put(key, tree);
+			}
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return tree;
+	}
+
+	/**
+	 * Save a parsed tree in the cache
+	 *
+	 * @param key
+	 *            key for the source file that was parsed
+	 * @param tree
+	 *            the parsed tree - must not yet have been altered in any way
+	 */
+	public void put(Key key, JsonNode tree) {
+		CacheFiles.writeAtomically(getEntryPath(key), out -> {
+			key.write(out);
+			CacheFiles.smileMapper.writeValue(out, tree);
+		});
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	private Path getEntryPath(Key key) {
+		return dir.resolve(CacheFiles.sha1Hex(key.getUrl()) + ENTRY_SUFFIX);
+	}
+
+	/**
+	 * Identifies a source file in a particular state
+	 */
+	public static class Key {
+		private String url;
+		private long size;
+		private long modified;
+		private byte[] hash;
+		// content still to be hashed, for a key made from a file
+		private ByteBuffer content;
+
+		private Key(String url, long size, long modified, byte[] hash) {
+			this.url = url;
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+
+		private Key(String url, long size, long modified, ByteBuffer content) {
+			this(url, size, modified, (byte[]) null);
+			this.content = content;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getModified() {
+			return modified;
+		}
+
+		private byte[] getHash() {
+			if (hash == null) {
+				this.hash = CacheFiles.sha1(content);
+				this.content = null;
+			}
+			return hash;
+		}
+
+		// size and modification time are trusted; the content is hashed only if
+		// the file has been touched since the entry was written
+		private boolean matches(Key other) {
+			return url.equals(other.url) && size == other.size
+					&& (modified == other.modified || Arrays.equals(getHash(), other.getHash()));
+		}
+
+		private void write(DataOutputStream out) throws IOException {
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(url);
+			out.writeLong(size);
+			out.writeLong(modified);
+			out.writeShort(getHash().length);
+			out.write(getHash());
+		}
+
+		private static Key read(DataInputStream in) throws IOException {
+			if (in.readInt() != FORMAT_VERSION) {
+				throw new IOException("Unsupported parse cache entry format");
+			}
+			String url = in.readUTF();
+			long size = in.readLong();
+			long modified = in.readLong();
+			byte[] hash = new byte[in.readShort()];
+			in.readFully(hash);
+			return new Key(url, size, modified, hash);
+		}
+	}
+}
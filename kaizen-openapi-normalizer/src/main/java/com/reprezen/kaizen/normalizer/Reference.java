@@ -6,11 +6,7 @@ import static com.reprezen.kaizen.normalizer.Reference.ReferenceTreatment.INLINE
 import static com.reprezen.kaizen.normalizer.Reference.ReferenceTreatment.LOCALIZE;
 import static com.reprezen.kaizen.normalizer.Reference.ReferenceTreatment.MERGE;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.MalformedURLException;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Optional;
 import java.util.regex.Pattern;
@@ -18,8 +14,8 @@ import java.util.regex.Pattern;
 import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
-import com.fasterxml.jackson.databind.node.MissingNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.reprezen.kaizen.normalizer.loader.VirtualSchemes;
 
 public class Reference {
 
@@ -28,20 +24,18 @@ public class Reference {
 	}
 
 	public static Optional<String> getRefString(JsonNode node) {
-		if (node instanceof ObjectNode) {
-			ObjectNode objNode = (ObjectNode) node;
-			if (objNode.has("$ref") && objNode.get("$ref").isTextual()) {
-				return Optional.of(objNode.get("$ref").asText());
+		// not just ObjectNode: compact trees have their own object nodes
+		if (node != null && node.isObject()) {
+			JsonNode ref = node.get("$ref");
+			if (ref != null && ref.isTextual()) {
+				return Optional.of(ref.asText());
 			}
 		}
 		return Optional.empty();
 	}
 
 	private String refString;
-	private URL url;
-	private String urlString;
-	private String fragment;
-	private JsonPointer pointer;
+	private CanonicalRef canonical;
 	private Component component = null;
 	private boolean valid = true;
 	private Exception invalidException = null;
@@ -68,25 +62,27 @@ public class Reference {
 	}
 
 	public Reference(String refString, Reference baseRef, Component component) {
+		this(refString, ReferenceFactory.getDefault().get(baseRef != null ? baseRef.canonical : null, refString),
+				component);
+	}
+
+	/**
+	 * Create a reference with an already parsed canonical form
+	 *
+	 * @param refString
+	 *            the reference string, as it appears in the source
+	 * @param canonical
+	 *            the parsed and normalized reference
+	 * @param component
+	 *            the component the reference is expected to target; may be null
+	 */
+	Reference(String refString, CanonicalRef canonical, Component component) {
 		this.refString = refString;
-		String[] parts = refString.split("#", 2);
-		this.urlString = parts[0];
-		try {
-			URL base = baseRef != null ? baseRef.url : null;
-			this.url = normalizeUrl(base, urlString);
-			this.urlString = url.toString();
-		} catch (MalformedURLException | URISyntaxException e) {
-			markInvalid(e);
-		}
-		if (parts.length > 1 && !parts[1].isEmpty()) {
-			fragment = parts[1];
-		}
-		try {
-			this.pointer = JsonPointer.compile(fragment != null ? fragment : "");
-		} catch (Exception e) {
-			markInvalid(e);
-		}
+		this.canonical = canonical;
 		this.component = component;
+		if (canonical.getParseException() != null) {
+			markInvalid(canonical.getParseException());
+		}
 	}
 
 	public static Reference invalidRef(String refString, String invalidReason) {
@@ -100,27 +96,36 @@ public class Reference {
 	}
 
 	public URL getUrl() {
-		return url;
+		return canonical.getUrl();
 	}
 
 	public Reference getUrlRef() {
-		return new Reference(url);
+		CanonicalRef urlRef = canonical.getUrlRef();
+		return new Reference(urlRef.getUrlString(), urlRef, null);
 	}
 
 	public String getUrlString() {
-		return urlString;
+		return canonical.getUrlString();
 	}
 
 	public String getCanonicalString() {
-		return urlString + (fragment != null ? "#" + fragment : "");
+		return canonical.toString();
+	}
+
+	/**
+	 * @return the parsed and normalized form of this reference, which is shared
+	 *         by all equal references
+	 */
+	public CanonicalRef getCanonical() {
+		return canonical;
 	}
 
 	public String getFragment() {
-		return fragment;
+		return canonical.getFragment();
 	}
 
 	public JsonPointer getPointer() {
-		return pointer;
+		return canonical.getPointer();
 	}
 
 	public Component getComponent() {
@@ -151,8 +156,8 @@ public class Reference {
 		if (adorned) {
 			ObjectNode adornment = node.putObject(ADORNMENT_PROPERTY);
 			adornment.put("valid", valid);
-			adornment.put("url", urlString);
-			adornment.put("fragment", fragment);
+			adornment.put("url", getUrlString());
+			adornment.put("fragment", getFragment());
 			adornment.set("component", getComponentInfo());
 			adornment.put("invalidReason", invalidReason);
 			adornment.set("invalidException", getExceptionInfo());
@@ -174,12 +179,14 @@ public class Reference {
 		JsonNode info = refNode.path(ADORNMENT_PROPERTY);
 		if (!info.isMissingNode()) {
 			ref.valid = info.path("valid").asBoolean();
-			ref.urlString = info.path("url").asText();
+			String urlString = info.path("url").asText();
+			URL url = null;
 			try {
-				ref.url = new URL(ref.urlString);
+				url = VirtualSchemes.createUrl(null, urlString);
 			} catch (MalformedURLException e) {
 			}
-			ref.fragment = info.path("fragment").asText();
+			ref.canonical = new CanonicalRef(url, urlString, info.path("fragment").asText(), ref.getPointer(),
+					ref.canonical.getParseException());
 			ref.component = reconstituteComponent(info.path("component"));
 			ref.invalidReason = info.path("invalidReason").asText();
 			ref.invalidException = reconstituteException(info.path("invalidException"));
@@ -187,55 +194,42 @@ public class Reference {
 	}
 
 	private JsonNode getComponentInfo() {
-		if (component != null) {
-			ObjectNode info = JsonNodeFactory.instance.objectNode();
-			info.put("class", component.getClass().getName());
-			info.put("name", component.name());
-			return info;
-		} else {
-			return MissingNode.getInstance();
-		}
+		return component != null ? JsonNodeFactory.instance.textNode(ComponentRegistry.getDefault().getKey(component))
+				: JsonNodeFactory.instance.nullNode();
 	}
 
 	private static Component reconstituteComponent(JsonNode comp) {
-		if (comp.isMissingNode()) {
+		if (comp.isMissingNode() || comp.isNull()) {
 			return null;
-		} else {
-			try {
-				Class<?> cls = Class.forName(comp.path("class").asText());
-				Method nameMeth = cls.getMethod("valueOf", String.class);
-				return (Component) nameMeth.invoke(null, comp.path("name").asText());
-			} catch (ClassNotFoundException | NoSuchMethodException | SecurityException | IllegalAccessException
-					| IllegalArgumentException | InvocationTargetException e) {
-				throw new IllegalStateException(e);
-			}
 		}
+		ComponentRegistry registry = ComponentRegistry.getDefault();
+		// older adornments identified components by class and name
+		Component component = comp.isTextual() ? registry.getComponent(comp.textValue())
+				: registry.getComponent(comp.path("class").asText(), comp.path("name").asText());
+		if (component == null) {
+			throw new IllegalStateException("Unknown component: " + comp);
+		}
+		return component;
 	}
 
 	private JsonNode getExceptionInfo() {
 		if (invalidException != null) {
 			ObjectNode info = JsonNodeFactory.instance.objectNode();
-			info.put("class", invalidException.getClass().getName());
+			info.put("class", invalidException instanceof InvalidReferenceException
+					? ((InvalidReferenceException) invalidException).getExceptionClassName()
+					: invalidException.getClass().getName());
 			info.put("message", invalidException.getMessage());
 			return info;
 		} else {
-			return MissingNode.getInstance();
+			return JsonNodeFactory.instance.nullNode();
 		}
 	}
 
 	private static Exception reconstituteException(JsonNode exc) {
-		if (exc.isMissingNode()) {
+		if (exc.isMissingNode() || exc.isNull()) {
 			return null;
 		} else {
-			Class<?> cls;
-			try {
-				cls = Class.forName(exc.path("class").asText());
-				Constructor<?> cons = cls.getConstructor(String.class);
-				return (Exception) cons.newInstance(exc.path("message").textValue());
-			} catch (ClassNotFoundException | NoSuchMethodException | SecurityException | InstantiationException
-					| IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-				throw new IllegalStateException(e);
-			}
+			return new InvalidReferenceException(exc.path("class").asText(), exc.path("message").textValue());
 		}
 	}
 
@@ -275,6 +269,7 @@ public class Reference {
 	private static Pattern SIMPLE_REF_PAT = Pattern.compile("[_A-Za-z]([-A-Za-z0-9_]*[_A-Za-z0-9])?");
 
 	public boolean isSimpleRef() {
+		String fragment = getFragment();
 		return fragment != null && SIMPLE_REF_PAT.matcher(fragment).matches();
 	}
 
@@ -282,35 +277,25 @@ public class Reference {
 		if (isSimpleRef()) {
 			String containerPath = component != null ? component.getContainerPath() : null;
 			if (containerPath != null) {
-				this.fragment = String.format("%s/%s", component.getContainerPath(), fragment);
+				// the canonical form is shared, so it's replaced rather than altered
+				this.canonical = canonical.withFragment(String.format("%s/%s", containerPath, getFragment()));
 			} else {
 				throw new IllegalStateException();
 			}
 		}
 		// if we're invalid because of a bad fragment, we should be valid now
 		if (invalidReason != null && invalidReason.toLowerCase().contains("json pointer expression")) {
-			try {
-				this.pointer = JsonPointer.compile(fragment);
+			if (canonical.getPointer() != null) {
 				this.valid = true;
-			} catch (Exception e) {
-				this.invalidReason = e.toString();
+			} else {
+				this.invalidReason = canonical.getParseException().toString();
 			}
 		}
 	}
 
-	private URL normalizeUrl(URL base, String urlString) throws MalformedURLException, URISyntaxException {
-		URL url = new URL(base, urlString);
-		url = url.toURI().normalize().toURL();
-		return url;
-	}
-
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((fragment == null) ? 0 : fragment.hashCode());
-		result = prime * result + ((urlString == null) ? 0 : urlString.hashCode());
-		return result;
+		return canonical.hashCode();
 	}
 
 	@Override
@@ -322,23 +307,13 @@ public class Reference {
 		if (getClass() != obj.getClass())
 			return false;
 		Reference other = (Reference) obj;
-		if (fragment == null) {
-			if (other.fragment != null)
-				return false;
-		} else if (!fragment.equals(other.fragment))
-			return false;
-		if (urlString == null) {
-			if (other.urlString != null)
-				return false;
-		} else if (!urlString.equals(other.urlString))
-			return false;
-		return true;
+		return canonical.equals(other.canonical);
 	}
 
 	@Override
 	public String toString() {
 		return String.format("Ref[%s; valid=%s; comp=%s; canon=%s%s", refString, valid ? "yes" : "no: " + invalidReason,
-				component, urlString, fragment != null ? "#" + fragment : "");
+				component, canonical.getUrlString(), getFragment() != null ? "#" + getFragment() : "");
 	}
 
 	public enum ReferenceTreatment {
@@ -0,0 +1,124 @@
+package com.reprezen.kaizen.normalizer;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.reprezen.kaizen.normalizer.loader.VirtualSchemes;
+
+/**
+ * Cache of parsed and normalized reference strings.
+ * <p>
+ * A large spec mentions the same few thousand references many thousands of
+ * times over. Splitting, resolving and normalizing each occurrence separately
+ * dominates reference handling, so every {@link Reference} obtains its
+ * {@link CanonicalRef} from a factory, keyed by base URL and reference string,
+ * and only the first occurrence of each pays for the parse.
+ * <p>
+ * Reference strings whose URL cannot be parsed are not cached, since the
+ * outcome can change when a scheme is registered with {@link VirtualSchemes}.
+ * The cache is cleared whenever it grows beyond its bound. Factories are
+ * thread-safe.
+ */
+public class ReferenceFactory {
+
+	public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+	private static final ReferenceFactory defaultFactory = new ReferenceFactory();
+
+	private Map<String, Map<String, CanonicalRef>> refsByBase = new ConcurrentHashMap<>();
+	private int maxEntries;
+	private AtomicInteger size = new AtomicInteger();
+	private LongAdder hitCount = new LongAdder();
+
+	/**
+	 * Create a factory holding up to {@value #DEFAULT_MAX_ENTRIES} references
+	 */
+	public ReferenceFactory() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            number of references beyond which the cache is cleared
+	 */
+	public ReferenceFactory(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the factory used by {@link Reference}
+	 */
+	public static ReferenceFactory getDefault() {
+		return defaultFactory;
+	}
+
+	/**
+	 * Obtain the canonical form of a reference string
+	 *
+	 * @param base
+	 *            URL against which the reference is resolved; may be null
+	 * @param refString
+	 *            the reference string
+	 * @return the canonical reference, shared with all callers passing an equal
+	 *         base and reference string
+	 */
+	public CanonicalRef get(URL base, String refString) {
+		return get(base, base != null ? base.toString() : "", refString);
+	}
+
+	/**
+	 * Obtain the canonical form of a reference string relative to another
+	 * reference, without rendering the base URL as a string
+	 */
+	CanonicalRef get(CanonicalRef base, String refString) {
+		if (base != null && base.getUrl() != null) {
+			return get(base.getUrl(), base.getUrlString(), refString);
+		} else {
+			return get(null, "", refString);
+		}
+	}
+
+	private CanonicalRef get(URL base, String baseKey, String refString) {
+		Map<String, CanonicalRef> refs = refsByBase.get(baseKey);
+		CanonicalRef ref = refs != null ? refs.get(refString) : null;
+		if (ref != null) {
+			hitCount.increment();
+			return ref;
+		}
+		ref = new CanonicalRef(base, refString);
+		if (ref.getUrl() != null) {
+			if (size.incrementAndGet() > maxEntries) {
+				clear();
+				size.incrementAndGet();
+			}
+			CanonicalRef existing = refsByBase.computeIfAbsent(baseKey, k -> new ConcurrentHashMap<>())
+					.putIfAbsent(refString, ref);
+			if (existing != null) {
+				return existing;
+			}
+		}
+		return ref;
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * @return approximate number of cached references
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	public void clear() {
+		refsByBase.clear();
+		size.set(0);
+	}
+}
@@ -28,7 +28,7 @@ public class ReferenceProcessor<E extends Enum<E> & Component> {
 		this(machine, Options.of(options));
 	}
 
-	private ReferenceProcessor(StateMachine<E> machine, Options options) {
+	public ReferenceProcessor(StateMachine<E> machine, Options options) {
 		this.options = options;
 		this.contentManager = new ContentManager<E>(options, machine);
 		this.machine = machine;
@@ -38,8 +38,8 @@ public class ReferenceProcessor<E extends Enum<E> & Component> {
 	public JsonNode process(URL sourceModel) {
 		List<Content<E>> models = new ArrayList<>();
 		models.add(contentManager.load(new Reference(sourceModel), modelState));
-		for (URL additionalFile : options.getAdditionalFileUrls()) {
-			models.add(contentManager.load(new Reference(additionalFile), modelState));
+		for (Reference additionalFile : options.getAdditionalFileRefs()) {
+			models.add(contentManager.load(additionalFile, modelState));
 		}
 		inlineNonConformingRefs(models);
 		localizeComponents(models);
@@ -47,6 +47,10 @@ public class ReferenceProcessor<E extends Enum<E> & Component> {
 		return buildNormalizedModel(models.get(0));
 	}
 
+	ContentManager<E> getContentManager() {
+		return contentManager;
+	}
+
 	private void inlineNonConformingRefs(List<Content<E>> models) {
 		for (Content<E> model : models) {
 			model.scan(ScanOp.LOAD);
@@ -63,6 +67,8 @@ public class ReferenceProcessor<E extends Enum<E> & Component> {
 		for (Content<E> model : models) {
 			model.scan(ScanOp.POLICY);
 		}
+		// every reference that will be resolved has been
+		contentManager.discardPrefetched();
 	}
 
 	private JsonNode buildNormalizedModel(Content<E> topModel) {
@@ -2,8 +2,12 @@ package com.reprezen.kaizen.normalizer;
 
 import static com.reprezen.kaizen.normalizer.Reference.getRefString;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -30,15 +34,27 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 	private ScanOp scanOp;
 	private ContentManager<E> contentManager;
 	private Options options;
+	private Map<JsonNode, Reference> references;
 
 	public ReferenceScanner(JsonNode tree, Reference base, ScanOp scanOp, ContentManager<E> contentManager,
 			Options options) {
+		this(tree, base, scanOp, contentManager, options, null);
+	}
+
+	/**
+	 * @param references
+	 *            identity map in which to record the reference behind each ref node
+	 *            left in the tree; may be null
+	 */
+	ReferenceScanner(JsonNode tree, Reference base, ScanOp scanOp, ContentManager<E> contentManager,
+			Options options, Map<JsonNode, Reference> references) {
 		this.tree = tree;
 		this.base = base;
 		this.scanOp = scanOp;
 		this.contentManager = contentManager;
 		this.options = options;
 		this.machine = contentManager.getMachine();
+		this.references = references;
 	}
 
 	public JsonNode scan() {
@@ -51,21 +67,76 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 
 	public JsonNode scan(State<E> startState) {
 		Tracker<E> tracker = machine.tracker(startState);
-		Walkers<E> walkers = new Walkers<E>(base, contentManager, options);
+		// when documents are released, the documents this tree refers to are kept
+		// until all its references into them have been resolved
+		Set<JsonNode> counted = scanOp == ScanOp.LOAD && options.isReleaseResolvedDocuments()
+				? countReferences(startState) : null;
+		Walkers<E> walkers = new Walkers<E>(base, contentManager, options, references, counted);
 		AdvancedWalkMethod<E> walkMethod = walkers.getWalkMethod(scanOp);
 		Optional<JsonNode> newNode = new JsonStateWalker<E>(tracker, walkMethod).walk(tree);
 		return newNode.orElse(tree);
 	}
 
+	/**
+	 * Count the references that a LOAD scan of the tree, or a later POLICY scan,
+	 * will resolve, before any are resolved.
+	 *
+	 * @return the ref nodes counted
+	 */
+	private Set<JsonNode> countReferences(State<E> startState) {
+		Set<JsonNode> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+		AdvancedWalkMethod<E> countMethod = (node, state, stateValue, path, pointer) -> {
+			if (Reference.isRefNode(node)) {
+				Reference ref = Walkers.createLoadRef(node, base, stateValue, options);
+				if (Walkers.isResolved(ref.getTreatment(options))) {
+					contentManager.expectReference(ref);
+					counted.add(node);
+				}
+				// the LOAD scan doesn't descend into ref nodes either
+				return Disposition.done();
+			}
+			return Disposition.normal();
+		};
+		new JsonStateWalker<E>(machine.tracker(startState), countMethod).walk(tree);
+		return counted;
+	}
+
 	private static class Walkers<E extends Enum<E> & Component> {
 		private Reference base;
 		private ContentManager<E> contentManager;
 		private Options options;
+		private Map<JsonNode, Reference> references;
+		private Set<JsonNode> counted;
 
-		public Walkers(Reference base, ContentManager<E> contentManager, Options options) {
+		public Walkers(Reference base, ContentManager<E> contentManager, Options options,
+				Map<JsonNode, Reference> references, Set<JsonNode> counted) {
 			this.base = base;
 			this.contentManager = contentManager;
 			this.options = options;
+			this.references = references;
+			this.counted = counted;
+		}
+
+		static Reference createLoadRef(JsonNode node, Reference base, Component component, Options options) {
+			Reference ref = new Reference(getRefString(node).get(), base, component);
+			if (options.isRewriteSimpleRefs()) {
+				ref.rewriteSimpleRef();
+			}
+			return ref;
+		}
+
+		// whether a reference found by a LOAD scan is resolved, by that scan or a later
+		// POLICY scan
+		static boolean isResolved(ReferenceTreatment treatment) {
+			switch (treatment) {
+			case INLINE_NONCONFORMING:
+			case MERGE:
+			case INLINE_CONFORMING:
+			case LOCALIZE:
+				return true;
+			default:
+				return false;
+			}
 		}
 
 		public AdvancedWalkMethod<E> getWalkMethod(ScanOp scanOp) {
@@ -95,26 +166,35 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 		public Disposition loadWalkMethod(JsonNode node, State<E> state, E stateValue, List<Object> path,
 				JsonPointer pointer) {
 			if (Reference.isRefNode(node)) {
-				Reference ref = new Reference(getRefString(node).get(), base, stateValue);
-				if (options.isRewriteSimpleRefs()) {
-					ref.rewriteSimpleRef();
-				}
+				Reference ref = createLoadRef(node, base, stateValue, options);
+				// references in content inlined by this scan weren't counted beforehand
+				boolean wasCounted = counted != null && counted.remove(node);
 				switch (ref.getTreatment(options)) {
 				case INLINE_NONCONFORMING: {
-					// inline and re-walk non-conforming ref, but if we can't load it, replace it
-					// with an adorned ref node
+					// inline and re-walk non-conforming ref, but if we can't load it, leave a ref
+					// node recording the failure
 					// TODO handle cycles
 					Content<E> toInline = contentManager.load(ref, state);
-					return toInline.isValid() ? Disposition.rewalk(toInline.copyTree())
-							: Disposition.done(toInline.getRef().getRefNode());
+					Disposition disposition = toInline.isValid() ? Disposition.rewalk(toInline.copyTree())
+							: refNode(node, toInline.getRef());
+					contentManager.release(toInline);
+					if (wasCounted) {
+						contentManager.referenceResolved(ref);
+					}
+					return disposition;
 				}
 				case MERGE:
 				case INLINE_CONFORMING:
 				case LOCALIZE:
+					// resolved in the POLICY phase, which the target document is kept for
+					if (!wasCounted) {
+						contentManager.expectReference(ref);
+					}
+					return refNode(node, ref);
 				case RETAIN:
 				case ERROR:
-					// all other refs are copied with adornments
-					return Disposition.done(ref.getRefNode());
+					// all other refs are left in place, with their references recorded
+					return refNode(node, ref);
 				}
 			}
 			return Disposition.normal();
@@ -137,15 +217,12 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 				if (stateValue.hasMergeSemantics()) {
 					// this is for paths - the definition may or may not have a reference. If it
 					// does, it may have other fields. In all cases, we take the defining value,
-					// remove a reference string and its adornments, if they're present, and
-					// localize the rest (which may be empty). That establishes the localized path.
-					// The reference, if any, will be merged during Policy phase.
+					// remove a reference string, if it's present, and localize the rest (which may
+					// be empty). That establishes the localized path. The reference, if any, will
+					// be merged during Policy phase.
 					JsonNode copy = node.deepCopy();
 					if (copy.has("$ref")) {
 						((ObjectNode) copy).remove("$ref");
-						if (copy.has(Reference.ADORNMENT_PROPERTY)) {
-							((ObjectNode) copy).remove(Reference.ADORNMENT_PROPERTY);
-						}
 					}
 					contentManager.localize(copy, stateValue.getDefinedComponent(), pointer, base);
 
@@ -193,8 +270,10 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 					// TODO handle cycles
 					Content<E> toInline = contentManager.load(ref, state);
 					toInline.scan(ScanOp.LOAD);
-					return toInline.isValid() ? Disposition.rewalk(toInline.copyTree())
-							: Disposition.done(toInline.getRef().getRefNode(false));
+					Disposition disposition = toInline.isValid() ? Disposition.rewalk(toInline.copyTree())
+							: refNode(node, toInline.getRef());
+					contentManager.release(toInline);
+					return disposition;
 				}
 				case INLINE_CONFORMING: {
 					// almost the same, but if this reference creates a cycle, we localize it
@@ -204,8 +283,11 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 					if (toInline.isValid()) {
 						toInline.scan(ScanOp.LOAD);
 					}
-					return toInline.isValid() ? Disposition.rewalk(toInline.copyTree())
-							: Disposition.done(toInline.getRef().getRefNode(false));
+					Disposition disposition = toInline.isValid() ? Disposition.rewalk(toInline.copyTree())
+							: refNode(node, toInline.getRef());
+					contentManager.release(toInline);
+					contentManager.referenceResolved(ref);
+					return disposition;
 				}
 				case LOCALIZE: {
 					Content<E> toLocalize = contentManager.load(ref, state);
@@ -214,9 +296,13 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 						toLocalize.scan(ScanOp.POLICY);
 						LocalizedContent localized = contentManager.localize(toLocalize.getTree(), stateValue,
 								ref.getPointer(), ref);
-						return Disposition.done(localized.getLocalizedRef(ref).getRefNode(false));
+						// the localizer keeps the localized subtree, but not the rest of the document
+						contentManager.release(toLocalize);
+						contentManager.referenceResolved(ref);
+						return refNode(node, localized.getLocalizedRef(ref));
 					} else {
-						return Disposition.done(ref.getRefNode(false));
+						contentManager.referenceResolved(ref);
+						return refNode(node, ref);
 					}
 				}
 				case MERGE: {
@@ -227,16 +313,17 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 						toMerge.scan(ScanOp.LOAD);
 						toMerge.scan(ScanOp.POLICY);
 						contentManager.mergeLocalize(toMerge.getTree(), stateValue, pointer, base);
+						contentManager.release(toMerge);
 					} else {
 						contentManager.mergeLocalize(ref.getRefNode(false), stateValue, pointer, base);
 					}
-					return Disposition.done(ref.getRefNode(false));
+					contentManager.referenceResolved(ref);
+					return refNode(node, ref);
 				}
 				case ERROR:
 				case RETAIN:
-					// pass through erroneous and retained references, but remove any adornments
-					// from prior phases
-					return Disposition.done(ref.getRefNode(false));
+					// pass through erroneous and retained references
+					return refNode(node, ref);
 				default:
 					break;
 
@@ -244,6 +331,22 @@ public class ReferenceScanner<E extends Enum<E> & Component> {
 			}
 			return Disposition.normal();
 		}
+
+		/**
+		 * Leave a ref node for the given reference in the tree.
+		 * <p>
+		 * A node that holds nothing but the same reference string is kept as is, so
+		 * the tree is only rewritten where a reference actually changes. The reference
+		 * is recorded against the node rather than in it.
+		 */
+		private Disposition refNode(JsonNode node, Reference ref) {
+			JsonNode refNode = node.size() == 1 && ref.getRefString().equals(getRefString(node).orElse(null)) ? node
+					: ref.getRefNode(false);
+			if (references != null) {
+				references.put(refNode, ref);
+			}
+			return refNode == node ? Disposition.done() : Disposition.done(refNode);
+		}
 	}
 
 	public enum ScanOp {
@@ -0,0 +1,237 @@
+package com.reprezen.kaizen.normalizer;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.CompactNode;
+import com.reprezen.kaizen.normalizer.util.CompactTreeBuilder;
+
+/**
+ * In-memory cache of parsed documents, shared by any number of normalizations
+ * in the same process.
+ * <p>
+ * Documents are held as immutable {@link CompactNode} trees, and every hit
+ * hands out the cached tree itself, so all the normalizations using a document
+ * share one copy of it. The normalizer alters the trees it works on, but only
+ * after {@link Content#getTree()} has made a mutable copy of the part it needs;
+ * see {@link CompactNode#materialize()}.
+ * <p>
+ * Each entry is weighted by an estimate of its tree's heap footprint, and least
+ * recently used entries are evicted once the total weight exceeds the
+ * configured cap. A document too heavy to fit under the cap on its own is never
+ * cached. Entries for local files are dropped when the file's size or
+ * modification time no longer matches.
+ */
+public class SharedDocumentCache {
+
+	// rough per-node heap costs, in bytes, for a 64-bit JVM with compressed oops
+	private static final int NODE_WEIGHT = 24;
+	private static final int CONTAINER_WEIGHT = 56;
+	private static final int FIELD_WEIGHT = 48;
+	private static final int ELEMENT_WEIGHT = 8;
+
+	private long maxWeight;
+	private long weight = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * @param maxWeight
+	 *            memory cap, in (estimated) bytes
+	 */
+	public SharedDocumentCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Obtain a cached document
+	 *
+	 * @param url
+	 *            document URL, without fragment
+	 * @return the cached tree, which is immutable, or null if it's not cached
+	 */
+	public JsonNode get(URL url) {
+		String key = url.toString();
+		Stamp stamp = Stamp.of(url);
+		JsonNode tree = null;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && !entry.stamp.equals(stamp)) {
+				remove(key);
+				entry = null;
+			}
+			if (entry != null) {
+				hits++;
+				tree = entry.tree;
+			} else {
+				misses++;
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * Cache a freshly parsed document
+	 *
+	 * @param url
+	 *            document URL, without fragment
+	 * @param tree
+	 *            the parsed tree, which is left as it is
+	 * @return the immutable tree that was cached, or would have been; the caller
+	 *         should use it in place of the given tree, so the document isn't held
+	 *         twice
+	 */
+	public JsonNode put(URL url, JsonNode tree) {
+		JsonNode shared = tree instanceof CompactNode ? tree : new CompactTreeBuilder().compact(tree);
+		long treeWeight = estimateWeight(shared);
+		if (treeWeight > maxWeight) {
+			return shared;
+		}
+		Stamp stamp = Stamp.of(url);
+		Entry entry = new Entry(shared, treeWeight, stamp);
+		synchronized (this) {
+			remove(url.toString());
+			entries.put(url.toString(), entry);
+			weight += treeWeight;
+			for (Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator(); weight > maxWeight
+					&& iter.hasNext();) {
+				weight -= iter.next().getValue().weight;
+				iter.remove();
+				evictions++;
+			}
+		}
+		return shared;
+	}
+
+	public synchronized void invalidate(URL url) {
+		remove(url.toString());
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			weight -= entry.weight;
+		}
+	}
+
+	/**
+	 * Estimate the heap footprint of a tree
+	 *
+	 * @param node
+	 *            root of the tree
+	 * @return estimated size in bytes
+	 */
+	public static long estimateWeight(JsonNode node) {
+		// switch on node type, rather than isObject() etc., which not every Jackson
+		// version derives from the node type of a compact node
+		switch (node.getNodeType()) {
+		case OBJECT: {
+			long total = CONTAINER_WEIGHT;
+			for (Iterator<Map.Entry<String, JsonNode>> iter = node.fields(); iter.hasNext();) {
+				Map.Entry<String, JsonNode> field = iter.next();
+				// field names are mostly interned by the parser, so they're not counted
+				total += FIELD_WEIGHT + estimateWeight(field.getValue());
+			}
+			return total;
+		}
+		case ARRAY: {
+			long total = CONTAINER_WEIGHT;
+			for (JsonNode element : node) {
+				total += ELEMENT_WEIGHT + estimateWeight(element);
+			}
+			return total;
+		}
+		case STRING:
+			return NODE_WEIGHT + CONTAINER_WEIGHT + 2 * node.textValue().length();
+		default:
+			return NODE_WEIGHT;
+		}
+	}
+
+	private static class Entry {
+		private JsonNode tree;
+		private long weight;
+		private Stamp stamp;
+
+		public Entry(JsonNode tree, long weight, Stamp stamp) {
+			this.tree = tree;
+			this.weight = weight;
+			this.stamp = stamp;
+		}
+	}
+
+	// Identifies the state of a local file; all other documents are assumed not to
+	// change while cached
+	static class Stamp {
+		private static final Stamp NONE = new Stamp(-1, -1);
+
+		private long size;
+		private long modified;
+
+		private Stamp(long size, long modified) {
+			this.size = size;
+			this.modified = modified;
+		}
+
+		public static Stamp of(URL url) {
+			if (!"file".equals(url.getProtocol())) {
+				return NONE;
+			}
+			try {
+				Path path = Paths.get(url.toURI());
+				return new Stamp(Files.size(path), Files.getLastModifiedTime(path).toMillis());
+			} catch (URISyntaxException | IllegalArgumentException | IOException e) {
+				return NONE;
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Stamp && ((Stamp) obj).size == size && ((Stamp) obj).modified == modified;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(size) * 31 + Long.hashCode(modified);
+		}
+	}
+}
@@ -0,0 +1,391 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.ByteBufferInputStream;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Loader for <code>jar:</code> URLs, which address entries in zip, jar and tar
+ * archives, e.g. <code>jar:file:/bundles/api.zip!/api/openapi.yaml</code>.
+ * <p>
+ * Relative references among entries of an archive resolve against the entry
+ * path, just as they would against the extracted files. Each local archive is
+ * indexed once, on first use: for zip and jar files the central directory is
+ * read, and for tar files the entry headers are scanned. Entries are then read
+ * in place, without extracting anything to disk. Reads are safe to perform in
+ * parallel, so with prefetching enabled, the entries of an archive are loaded
+ * concurrently.
+ * <p>
+ * The content of entries that have been read is kept in memory, up to a limit
+ * on total size, so documents that are loaded again (as shared component
+ * libraries often are) are served without any file system access. An archive
+ * is checked for changes on disk at most once per check interval, and is
+ * indexed again, with its cached entries dropped, if it has changed. Archives
+ * that are not local files are read with a {@link UrlDocumentLoader}.
+ */
+public class ArchiveDocumentLoader implements DocumentLoader, Closeable {
+
+	public static final String SCHEME = "jar";
+
+	public static final long DEFAULT_CHECK_INTERVAL_MILLIS = 1000;
+	public static final long DEFAULT_MAX_CACHED_BYTES = 16 * 1024 * 1024;
+
+	static final String ENTRY_SEPARATOR = "!/";
+
+	private long checkIntervalMillis;
+	private long maxCachedBytes;
+	private AtomicLong cachedBytes = new AtomicLong();
+	private AtomicLong cacheHits = new AtomicLong();
+	private Map<Path, Archive> archives = new ConcurrentHashMap<>();
+	private DocumentLoader fallback = new UrlDocumentLoader();
+
+	public ArchiveDocumentLoader() {
+		this(DEFAULT_CHECK_INTERVAL_MILLIS, DEFAULT_MAX_CACHED_BYTES);
+	}
+
+	/**
+	 * @param checkIntervalMillis
+	 *            minimum time between checks of an archive for changes on disk;
+	 *            use {@link Long#MAX_VALUE} for archives that never change
+	 * @param maxCachedBytes
+	 *            limit on the total size of entry content kept in memory
+	 */
+	public ArchiveDocumentLoader(long checkIntervalMillis, long maxCachedBytes) {
+		this.checkIntervalMillis = checkIntervalMillis;
+		this.maxCachedBytes = maxCachedBytes;
+	}
+
+	@Override
+	public JsonNode load(URL url, DocumentParser parser) throws IOException {
+		String spec = url.toString();
+		int sep = spec.indexOf(ENTRY_SEPARATOR);
+		Path archivePath = sep > 0 ? getPath(spec.substring(SCHEME.length() + 1, sep)) : null;
+		Archive archive = archivePath != null ? getArchive(archivePath) : null;
+		if (archive == null) {
+			return fallback.load(url, parser);
+		}
+		String entryName = normalizeEntryName(decode(spec.substring(sep + ENTRY_SEPARATOR.length())));
+		byte[] content = archive.cached.get(entryName);
+		if (content != null) {
+			cacheHits.incrementAndGet();
+			return parser.parse(new ByteArrayInputStream(content));
+		}
+		try (InputStream in = archive.open(entryName)) {
+			if (in == null) {
+				throw new FileNotFoundException(String.format("%s (No such archive entry)", url));
+			}
+			content = readAll(in);
+		}
+		if (cachedBytes.addAndGet(content.length) <= maxCachedBytes
+				&& archive.cached.putIfAbsent(entryName, content) == null) {
+			archive.cachedBytes.addAndGet(content.length);
+		} else {
+			cachedBytes.addAndGet(-content.length);
+		}
+		return parser.parse(new ByteArrayInputStream(content));
+	}
+
+	/**
+	 * @return number of documents served from entry content kept in memory
+	 */
+	public long getCacheHitCount() {
+		return cacheHits.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Archive archive : archives.values()) {
+			discard(archive);
+		}
+		archives.clear();
+	}
+
+	private Archive getArchive(Path path) throws IOException {
+		Archive archive = archives.get(path);
+		if (archive != null && !archive.isCurrent(checkIntervalMillis)) {
+			archives.remove(path, archive);
+			discard(archive);
+			archive = null;
+		}
+		if (archive == null) {
+			if (!Files.isRegularFile(path)) {
+				return null;
+			}
+			// two threads may race to index the same archive; the loser's copy is
+			// discarded
+			Archive newArchive = Archive.open(path);
+			archive = archives.putIfAbsent(path, newArchive);
+			if (archive == null) {
+				archive = newArchive;
+			} else {
+				newArchive.close();
+			}
+		}
+		return archive;
+	}
+
+	private void discard(Archive archive) throws IOException {
+		cachedBytes.addAndGet(-archive.cachedBytes.getAndSet(0));
+		archive.cached.clear();
+		archive.close();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) >= 0) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static Path getPath(String urlString) {
+		try {
+			URL url = new URL(urlString);
+			return "file".equals(url.getProtocol()) ? Paths.get(url.toURI()) : null;
+		} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	// entry names appear percent-encoded in URLs
+	private static String decode(String entryName) {
+		try {
+			return new URI("jar:/" + entryName).getPath().substring(1);
+		} catch (URISyntaxException e) {
+			return entryName;
+		}
+	}
+
+	private static String normalizeEntryName(String name) {
+		while (name.startsWith("./") || name.startsWith("/")) {
+			name = name.substring(name.startsWith("/") ? 1 : 2);
+		}
+		return name;
+	}
+
+	private abstract static class Archive implements Closeable {
+		private Path path;
+		private long size;
+		private long modified;
+		private volatile long lastChecked;
+		private Map<String, byte[]> cached = new ConcurrentHashMap<>();
+		private AtomicLong cachedBytes = new AtomicLong();
+
+		protected Archive(Path path) throws IOException {
+			this.path = path;
+			this.size = Files.size(path);
+			this.modified = Files.getLastModifiedTime(path).toMillis();
+			this.lastChecked = System.currentTimeMillis();
+		}
+
+		public static Archive open(Path path) throws IOException {
+			return TarArchive.isTar(path) ? new TarArchive(path) : new ZipArchive(path);
+		}
+
+		public boolean isCurrent(long checkIntervalMillis) {
+			long now = System.currentTimeMillis();
+			if (now - lastChecked < checkIntervalMillis) {
+				return true;
+			}
+			try {
+				boolean current = Files.size(path) == size && Files.getLastModifiedTime(path).toMillis() == modified;
+				lastChecked = now;
+				return current;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * @return stream of entry content, or null if there's no such entry
+		 */
+		public abstract InputStream open(String entryName) throws IOException;
+	}
+
+	private static class ZipArchive extends Archive {
+		private ZipFile zipFile;
+
+		public ZipArchive(Path path) throws IOException {
+			super(path);
+			// reads the central directory
+			this.zipFile = new ZipFile(path.toFile());
+		}
+
+		@Override
+		public InputStream open(String entryName) throws IOException {
+			ZipEntry entry = zipFile.getEntry(normalizeEntryName(entryName));
+			return entry != null && !entry.isDirectory() ? zipFile.getInputStream(entry) : null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			zipFile.close();
+		}
+	}
+
+	/**
+	 * A tar archive (ustar, GNU or pax format), indexed by scanning its headers.
+	 * Entry content is read with positional reads, so concurrent reads don't
+	 * interfere.
+	 */
+	private static class TarArchive extends Archive {
+		private static final int BLOCK_SIZE = 512;
+		private static final int MAGIC_OFFSET = 257;
+
+		private FileChannel channel;
+		private Map<String, long[]> entries = new HashMap<>();
+
+		public TarArchive(Path path) throws IOException {
+			super(path);
+			this.channel = FileChannel.open(path, StandardOpenOption.READ);
+			try {
+				index();
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		public static boolean isTar(Path path) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				ByteBuffer magic = ByteBuffer.allocate(5);
+				readFully(channel, magic, MAGIC_OFFSET);
+				return "ustar".equals(new String(magic.array(), StandardCharsets.US_ASCII));
+			}
+		}
+
+		@Override
+		public InputStream open(String entryName) throws IOException {
+			long[] entry = entries.get(normalizeEntryName(entryName));
+			if (entry == null) {
+				return null;
+			}
+			if (entry[1] > Integer.MAX_VALUE) {
+				throw new IOException(String.format("Archive entry %s is too large to load", entryName));
+			}
+			return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, entry[0], entry[1]));
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		private void index() throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+			long pos = 0;
+			String longName = null;
+			while (pos + BLOCK_SIZE <= channel.size()) {
+				// Buffer's method, which a Java 8 runtime has
+				((Buffer) header).clear();
+				readFully(channel, header, pos);
+				byte[] block = header.array();
+				if (isZeroBlock(block)) {
+					break;
+				}
+				long size = parseOctal(block, 124, 12);
+				char type = (char) block[156];
+				long dataPos = pos + BLOCK_SIZE;
+				if (type == 'L' || type == 'x') {
+					// GNU long name, or pax extended header, applying to the next entry
+					ByteBuffer data = ByteBuffer.allocate((int) size);
+					readFully(channel, data, dataPos);
+					String text = new String(data.array(), StandardCharsets.UTF_8);
+					String name = type == 'L' ? trimNul(text) : getPaxPath(text);
+					if (name != null) {
+						longName = name;
+					}
+				} else {
+					if (type == '0' || type == '\0') {
+						String name = longName != null ? longName : getUstarName(block);
+						entries.put(normalizeEntryName(name), new long[] { dataPos, size });
+					}
+					longName = null;
+				}
+				pos = dataPos + (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+			}
+		}
+
+		private static String getUstarName(byte[] block) {
+			String name = parseString(block, 0, 100);
+			String prefix = parseString(block, 345, 155);
+			return prefix.isEmpty() ? name : prefix + "/" + name;
+		}
+
+		// pax records look like "<length> <key>=<value>\n"
+		private static String getPaxPath(String text) {
+			for (String record : text.split("\n")) {
+				int space = record.indexOf(' ');
+				if (space > 0 && record.startsWith("path=", space + 1)) {
+					return record.substring(space + 1 + "path=".length());
+				}
+			}
+			return null;
+		}
+
+		private static boolean isZeroBlock(byte[] block) {
+			for (byte b : block) {
+				if (b != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static long parseOctal(byte[] block, int offset, int length) {
+			long value = 0;
+			for (int i = offset; i < offset + length; i++) {
+				byte b = block[i];
+				if (b >= '0' && b <= '7') {
+					value = value * 8 + (b - '0');
+				} else if (b != ' ' || value != 0) {
+					break;
+				}
+			}
+			return value;
+		}
+
+		private static String parseString(byte[] block, int offset, int length) {
+			return trimNul(new String(block, offset, length, StandardCharsets.UTF_8));
+		}
+
+		private static String trimNul(String s) {
+			int nul = s.indexOf('\0');
+			return nul >= 0 ? s.substring(0, nul) : s;
+		}
+
+		private static void readFully(FileChannel channel, ByteBuffer buffer, long pos) throws IOException {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, pos + buffer.position()) < 0) {
+					break;
+				}
+			}
+		}
+	}
+}
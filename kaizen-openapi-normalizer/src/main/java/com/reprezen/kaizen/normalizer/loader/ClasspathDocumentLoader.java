@@ -0,0 +1,69 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Loader for <code>classpath:</code> URLs, e.g.
+ * <code>classpath:/com/example/api/common.yaml</code>.
+ * <p>
+ * The URL path names a resource that is located with a class loader. Each
+ * resource is located only once. Resources in jar files are read with an
+ * {@link ArchiveDocumentLoader}, so each jar is opened and indexed once, and
+ * documents loaded again are served from memory.
+ */
+public class ClasspathDocumentLoader implements DocumentLoader {
+
+	public static final String SCHEME = "classpath";
+
+	private ClassLoader classLoader;
+	private ArchiveDocumentLoader archiveLoader;
+	private Map<String, URL> resourceUrls = new ConcurrentHashMap<>();
+
+	public ClasspathDocumentLoader() {
+		this(ClasspathDocumentLoader.class.getClassLoader());
+	}
+
+	public ClasspathDocumentLoader(ClassLoader classLoader) {
+		this(classLoader, new ArchiveDocumentLoader());
+	}
+
+	public ClasspathDocumentLoader(ClassLoader classLoader, ArchiveDocumentLoader archiveLoader) {
+		this.classLoader = classLoader;
+		this.archiveLoader = archiveLoader;
+	}
+
+	@Override
+	public JsonNode load(URL url, DocumentParser parser) throws IOException {
+		String resource = url.getPath().startsWith("/") ? url.getPath().substring(1) : url.getPath();
+		URL resourceUrl = resourceUrls.get(resource);
+		if (resourceUrl == null) {
+			resourceUrl = classLoader.getResource(resource);
+			if (resourceUrl == null) {
+				throw new FileNotFoundException(url + " (No such resource)");
+			}
+			resourceUrls.put(resource, resourceUrl);
+		}
+		if (isSimpleJarUrl(resourceUrl)) {
+			return archiveLoader.load(resourceUrl, parser);
+		}
+		try (InputStream in = resourceUrl.openStream()) {
+			return parser.parse(in);
+		}
+	}
+
+	// jar URLs for entries of nested jars have more than one separator
+	private static boolean isSimpleJarUrl(URL url) {
+		String spec = url.toString();
+		int sep = spec.indexOf(ArchiveDocumentLoader.ENTRY_SEPARATOR);
+		return ArchiveDocumentLoader.SCHEME.equals(url.getProtocol()) && sep > 0
+				&& spec.indexOf(ArchiveDocumentLoader.ENTRY_SEPARATOR, sep + 1) < 0;
+	}
+}
@@ -0,0 +1,47 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.IOException;
+import java.net.URL;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Service provider interface for retrieving documents.
+ * <p>
+ * Loaders are registered by URL scheme in a {@link DocumentLoaderRegistry}, and
+ * the {@link com.reprezen.kaizen.normalizer.ContentManager} uses whichever
+ * loader is registered for a reference's scheme to obtain the referenced
+ * document. A loader is free to obtain the document content however it likes,
+ * and to skip parsing altogether if it can produce the parsed tree some other
+ * way, e.g. from a cache. Content that does need parsing should be handed to
+ * the provided parser.
+ * <p>
+ * Loaders may be invoked concurrently from multiple threads, up to the limit
+ * given by {@link #getMaxConcurrency()}.
+ */
+public interface DocumentLoader {
+
+	/**
+	 * Load and parse the document at the given URL
+	 *
+	 * @param url
+	 *            the document URL, without fragment
+	 * @param parser
+	 *            parser to use for document content
+	 * @return parsed document
+	 * @throws IOException
+	 *             if the document can't be retrieved or parsed
+	 */
+	JsonNode load(URL url, DocumentParser parser) throws IOException;
+
+	/**
+	 * Maximum number of loads this loader should be asked to perform
+	 * simultaneously
+	 *
+	 * @return concurrency limit
+	 */
+	default int getMaxConcurrency() {
+		return Integer.MAX_VALUE;
+	}
+}
@@ -0,0 +1,231 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.ParseCache;
+import com.reprezen.kaizen.normalizer.ReferenceFactory;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Registry of {@link DocumentLoader}s, keyed by URL scheme.
+ * <p>
+ * URLs whose schemes have no registered loader are handled by a default loader.
+ * Each loader's concurrency limit is enforced by the registry, so a loader
+ * never sees more simultaneous requests than it asked for.
+ * <p>
+ * Registering a loader for a scheme that the Java platform does not recognize
+ * (like <code>mem</code> or <code>classpath</code>) also makes that scheme
+ * usable in references, in every registry, until the loader is unregistered;
+ * see {@link VirtualSchemes}.
+ */
+public class DocumentLoaderRegistry {
+
+	// shared by all standard registries, so each archive is opened and indexed,
+	// and each classpath resource located, once per process rather than once per
+	// normalization
+	private static final ArchiveDocumentLoader STANDARD_ARCHIVE_LOADER = new ArchiveDocumentLoader();
+	private static final ClasspathDocumentLoader STANDARD_CLASSPATH_LOADER = new ClasspathDocumentLoader(
+			ClasspathDocumentLoader.class.getClassLoader(), STANDARD_ARCHIVE_LOADER);
+
+	private Map<String, Registration> registrations = new ConcurrentHashMap<>();
+	private Registration defaultRegistration;
+	private InMemoryDocumentLoader documents = null;
+	// virtual schemes registered by this registry, as opposed to copied from another
+	private Set<String> virtualSchemes = ConcurrentHashMap.newKeySet();
+
+	public DocumentLoaderRegistry() {
+		this(new UrlDocumentLoader());
+	}
+
+	public DocumentLoaderRegistry(DocumentLoader defaultLoader) {
+		this(new Registration(defaultLoader));
+	}
+
+	private DocumentLoaderRegistry(Registration defaultRegistration) {
+		this.defaultRegistration = defaultRegistration;
+	}
+
+	/**
+	 * Create a registry with the standard loaders for <code>file</code>,
+	 * <code>http</code>, <code>https</code>, <code>jar</code> (zip, jar and tar
+	 * archives) and <code>classpath</code> URLs.
+	 *
+	 * @param parseCache
+	 *            parse cache for the file loader, or null for none
+	 * @return the new registry
+	 */
+	public static DocumentLoaderRegistry standard(ParseCache parseCache) {
+		return standard(parseCache, null);
+	}
+
+	/**
+	 * Create a registry with the standard loaders, using the given caches.
+	 * <p>
+	 * The <code>jar</code> and <code>classpath</code> loaders are shared by all
+	 * standard registries, so open archives, documents read from them and located
+	 * classpath resources are retained across normalizations; see
+	 * {@link #getStandardArchiveLoader()}.
+	 *
+	 * @param parseCache
+	 *            parse cache for the file loader, or null for none
+	 * @param httpCache
+	 *            cache for the http and https loader, or null for none
+	 * @return the new registry
+	 */
+	public static DocumentLoaderRegistry standard(ParseCache parseCache, HttpCache httpCache) {
+		HttpDocumentLoader httpLoader = new HttpDocumentLoader().withCache(httpCache);
+		return new DocumentLoaderRegistry() //
+				.register("file", new FileDocumentLoader(parseCache)) //
+				.register("http", httpLoader) //
+				.register("https", httpLoader) //
+				.register(ArchiveDocumentLoader.SCHEME, STANDARD_ARCHIVE_LOADER) //
+				.register(ClasspathDocumentLoader.SCHEME, STANDARD_CLASSPATH_LOADER);
+	}
+
+	/**
+	 * @return the archive loader used by all standard registries
+	 */
+	public static ArchiveDocumentLoader getStandardArchiveLoader() {
+		return STANDARD_ARCHIVE_LOADER;
+	}
+
+	/**
+	 * Create a registry that serves the given documents from memory, whatever
+	 * their URL schemes, and loads all other documents as this registry does.
+	 * <p>
+	 * This registry is not altered, and the new one shares its loaders. The
+	 * returned registry also handles <code>mem:</code> URLs with the given
+	 * loader, unless this registry already has a loader for them.
+	 *
+	 * @param documents
+	 *            in-memory documents
+	 * @return the new registry
+	 */
+	public DocumentLoaderRegistry withDocuments(InMemoryDocumentLoader documents) {
+		DocumentLoaderRegistry registry = new DocumentLoaderRegistry(defaultRegistration);
+		registry.registrations.putAll(registrations);
+		if (!registrations.containsKey(InMemoryDocumentLoader.SCHEME)) {
+			registry.register(InMemoryDocumentLoader.SCHEME, documents);
+		}
+		registry.documents = documents;
+		return registry;
+	}
+
+	public DocumentLoaderRegistry register(String scheme, DocumentLoader loader) {
+		String key = scheme.toLowerCase();
+		registrations.put(key, new Registration(loader));
+		if (!isPlatformScheme(key) && virtualSchemes.add(key)) {
+			VirtualSchemes.register(key);
+		}
+		return this;
+	}
+
+	/**
+	 * Remove the loader registered for a scheme, if any.
+	 * <p>
+	 * If the scheme was made usable in references by this registry, and no other
+	 * registry still has a loader for it, references using the scheme are once
+	 * again invalid.
+	 *
+	 * @param scheme
+	 *            the scheme
+	 * @return this registry
+	 */
+	public DocumentLoaderRegistry unregister(String scheme) {
+		String key = scheme.toLowerCase();
+		registrations.remove(key);
+		if (virtualSchemes.remove(key) && VirtualSchemes.unregister(key)) {
+			// parsed references using the scheme are no longer valid
+			ReferenceFactory.getDefault().clear();
+		}
+		return this;
+	}
+
+	/**
+	 * @param url
+	 *            document URL, without fragment
+	 * @return true if the document is one of those served from memory by this
+	 *         registry; see {@link #withDocuments(InMemoryDocumentLoader)}
+	 */
+	public boolean hasDocument(URL url) {
+		return documents != null && documents.contains(url);
+	}
+
+	public DocumentLoader getLoader(String scheme) {
+		return getRegistration(scheme).loader;
+	}
+
+	/**
+	 * Load a document using the loader registered for its scheme
+	 *
+	 * @param url
+	 *            document URL, without fragment
+	 * @param parser
+	 *            parser for document content
+	 * @return parsed document
+	 * @throws IOException
+	 *             if the document can't be retrieved or parsed
+	 */
+	public JsonNode load(URL url, DocumentParser parser) throws IOException {
+		if (hasDocument(url)) {
+			return documents.load(url, parser);
+		}
+		Registration registration = getRegistration(url.getProtocol());
+		registration.acquire();
+		try {
+			return registration.loader.load(url, parser);
+		} finally {
+			registration.release();
+		}
+	}
+
+	private Registration getRegistration(String scheme) {
+		Registration registration = registrations.get(scheme.toLowerCase());
+		return registration != null ? registration : defaultRegistration;
+	}
+
+	private static boolean isPlatformScheme(String scheme) {
+		try {
+			new URL(scheme + ":/");
+			return true;
+		} catch (MalformedURLException e) {
+			return false;
+		}
+	}
+
+	private static class Registration {
+		private DocumentLoader loader;
+		private Semaphore permits;
+
+		public Registration(DocumentLoader loader) {
+			this.loader = loader;
+			int max = loader.getMaxConcurrency();
+			this.permits = max < Integer.MAX_VALUE ? new Semaphore(max) : null;
+		}
+
+		public void acquire() throws InterruptedIOException {
+			if (permits != null) {
+				try {
+					permits.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted waiting for a document loader");
+				}
+			}
+		}
+
+		public void release() {
+			if (permits != null) {
+				permits.release();
+			}
+		}
+	}
+}
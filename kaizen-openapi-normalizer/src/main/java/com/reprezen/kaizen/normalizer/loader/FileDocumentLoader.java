@@ -0,0 +1,95 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.ParseCache;
+import com.reprezen.kaizen.normalizer.util.ByteBufferInputStream;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Loader for <code>file:</code> URLs.
+ * <p>
+ * Files are memory-mapped rather than copied through a stream buffer, so
+ * repeated loads of large shared files are served from the OS page cache. If a
+ * {@link ParseCache} is provided, it is consulted before parsing.
+ * <p>
+ * If a file doesn't exist but a gzip-compressed copy with an added
+ * <code>.gz</code> extension does, the compressed copy is loaded in its place.
+ * The document keeps its uncompressed name, so relative references from it
+ * resolve as usual.
+ */
+public class FileDocumentLoader implements DocumentLoader {
+
+	public static final String GZIP_EXTENSION = ".gz";
+
+	private ParseCache parseCache;
+
+	public FileDocumentLoader() {
+		this(null);
+	}
+
+	public FileDocumentLoader(ParseCache parseCache) {
+		this.parseCache = parseCache;
+	}
+
+	@Override
+	public JsonNode load(URL url, DocumentParser parser) throws IOException {
+		Path path = getPath(url);
+		if (path != null && path.getFileName() != null && !Files.exists(path)) {
+			Path compressed = path.resolveSibling(path.getFileName() + GZIP_EXTENSION);
+			if (Files.isRegularFile(compressed)) {
+				path = compressed;
+			}
+		}
+		// missing and unreadable files go through the URL stream so the failure is
+		// reported the same way as for any other URL
+		if (path == null || !Files.isRegularFile(path) || !Files.isReadable(path)) {
+			try (InputStream in = url.openStream()) {
+				return parser.parse(in);
+			}
+		}
+		ByteBuffer content = map(path);
+		if (content == null) {
+			try (InputStream in = Files.newInputStream(path)) {
+				return parser.parse(in);
+			}
+		}
+		ParseCache.Key key = parseCache != null ? parseCache.key(url, path, content) : null;
+		JsonNode tree = key != null ? parseCache.get(key) : null;
+		if (tree == null) {
+			tree = parser.parse(new ByteBufferInputStream(content));
+			if (key != null && tree != null) {
+				parseCache.put(key, tree);
+			}
+		}
+		return tree;
+	}
+
+	private Path getPath(URL url) {
+		try {
+			return Paths.get(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	// The mapping remains valid after the channel is closed, and is released when
+	// the buffer is garbage-collected.
+	private ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// null if too big to map in one piece
+			return channel.size() <= Integer.MAX_VALUE ? channel.map(MapMode.READ_ONLY, 0, channel.size()) : null;
+		}
+	}
+}
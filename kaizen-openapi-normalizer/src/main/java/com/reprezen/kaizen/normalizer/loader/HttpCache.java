@@ -0,0 +1,225 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.CacheFiles;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * On-disk cache of documents retrieved over HTTP, shared across normalizer
+ * runs.
+ * <p>
+ * Each entry records a response's validators (its <code>ETag</code> and
+ * <code>Last-Modified</code> headers), the document parsed from its body, and
+ * the body itself. When a cached document is requested again, only the
+ * validators are read, and the {@link HttpDocumentLoader} makes a conditional
+ * request with them. If the server answers <code>304 Not Modified</code>, the
+ * cached tree is read and used without downloading or parsing anything. The
+ * body is read and re-parsed only if the stored tree can't be read.
+ * <p>
+ * Responses without validators are not cached. Problems reading or writing
+ * cache entries are never reported; they just result in cache misses.
+ */
+public class HttpCache {
+
+	private static final int FORMAT_VERSION = 2;
+	private static final String ENTRY_SUFFIX = ".http";
+	// enough for the validators, which are all that's read of most entries
+	private static final int HEADER_BUFFER_SIZE = 512;
+
+	private Path dir;
+	private AtomicLong revalidations = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	public HttpCache(Path dir) {
+		this.dir = dir;
+	}
+
+	public Path getDir() {
+		return dir;
+	}
+
+	/**
+	 * Retrieve the validators cached for a URL. Nothing else is read from the
+	 * entry until {@link Entry#readTree(DocumentParser)} is called.
+	 *
+	 * @param url
+	 *            document URL
+	 * @return the entry, or null if there is none
+	 */
+	public Entry get(URL url) {
+		Path path = getEntryPath(url);
+		if (Files.isRegularFile(path)) {
+			try (DataInputStream in = Entry.open(path)) {
+				Entry entry = Entry.readHeader(in, path);
+				if (entry.getUrl().equals(url.toString())) {
+					return entry;
+				}
+			} catch (IOException e) {
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Save a response in the cache
+	 *
+	 * @param url
+	 *            document URL
+	 * @param etag
+	 *            value of the response's <code>ETag</code> header, or null
+	 * @param lastModified
+	 *            value of the response's <code>Last-Modified</code> header, or
+	 *            null
+	 * @param body
+	 *            response body, as received
+	 * @param tree
+	 *            document parsed from the body - must not yet have been altered
+	 *            in any way
+	 */
+	public void put(URL url, String etag, String lastModified, byte[] body, JsonNode tree) {
+		if (etag == null && lastModified == null) {
+			return;
+		}
+		CacheFiles.writeAtomically(getEntryPath(url), out -> {
+			new Entry(url.toString(), etag, lastModified, null).writeHeader(out);
+			// the tree's length is recorded, so the body needn't be read when the tree is
+			byte[] treeBytes = CacheFiles.smileMapper.writeValueAsBytes(tree);
+			out.writeInt(treeBytes.length);
+			out.write(treeBytes);
+			out.writeInt(body.length);
+			out.write(body);
+		});
+	}
+
+	/**
+	 * Remove the cache entry for a URL, e.g. when the server no longer has the
+	 * document
+	 */
+	public void remove(URL url) {
+		try {
+			Files.deleteIfExists(getEntryPath(url));
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * @return number of documents reused after a <code>304 Not Modified</code>
+	 *         response
+	 */
+	public long getRevalidatedCount() {
+		return revalidations.get();
+	}
+
+	/**
+	 * @return number of documents downloaded in full
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	void recordRevalidation() {
+		revalidations.incrementAndGet();
+	}
+
+	void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	private Path getEntryPath(URL url) {
+		return dir.resolve(CacheFiles.sha1Hex(url.toString()) + ENTRY_SUFFIX);
+	}
+
+	/**
+	 * The validators of a cached response, with access to the rest of the entry
+	 */
+	public static class Entry {
+		private String url;
+		private String etag;
+		private String lastModified;
+		private Path path;
+
+		private Entry(String url, String etag, String lastModified, Path path) {
+			this.url = url;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.path = path;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Read the cached document, once the server has confirmed it's current
+		 *
+		 * @param parser
+		 *            parser for the cached body, used only if the stored tree can't
+		 *            be read
+		 * @return the document, or null if the entry can't be read, or has been
+		 *         replaced since its validators were read
+		 */
+		public JsonNode readTree(DocumentParser parser) {
+			try (DataInputStream in = open(path)) {
+				if (!isSameResponse(readHeader(in, path))) {
+					return null;
+				}
+				byte[] treeBytes = new byte[in.readInt()];
+				in.readFully(treeBytes);
+				try {
+					return CacheFiles.smileMapper.readTree(treeBytes);
+				} catch (IOException e) {
+					byte[] body = new byte[in.readInt()];
+					in.readFully(body);
+					return parser.parse(new ByteArrayInputStream(body));
+				}
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		private boolean isSameResponse(Entry other) {
+			return url.equals(other.url) && Objects.equals(etag, other.etag)
+					&& Objects.equals(lastModified, other.lastModified);
+		}
+
+		private void writeHeader(DataOutputStream out) throws IOException {
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(url);
+			out.writeUTF(etag != null ? etag : "");
+			out.writeUTF(lastModified != null ? lastModified : "");
+		}
+
+		private static DataInputStream open(Path path) throws IOException {
+			return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), HEADER_BUFFER_SIZE));
+		}
+
+		private static Entry readHeader(DataInputStream in, Path path) throws IOException {
+			if (in.readInt() != FORMAT_VERSION) {
+				throw new IOException("Unsupported HTTP cache entry format");
+			}
+			String url = in.readUTF();
+			String etag = in.readUTF();
+			String lastModified = in.readUTF();
+			return new Entry(url, etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified, path);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Loader for <code>http:</code> and <code>https:</code> URLs that makes the
+ * most of persistent connections.
+ * <p>
+ * The JDK keeps idle HTTP/1.1 connections in a pool, but only returns a
+ * connection to the pool once its response body has been read to the end and
+ * closed. Parsers stop reading at the end of the document, and error responses
+ * usually aren't read at all, so with plain {@link URL#openStream()} most
+ * connections are discarded. This loader drains every response, so each
+ * connection is reused for the next request to the same host.
+ * <p>
+ * The number of requests in flight to any one host is capped. The default cap
+ * matches the JDK's default pool size per destination (the
+ * <code>http.maxConnections</code> system property), so every connection opened
+ * can be kept for reuse. Responses are requested with gzip encoding, which the
+ * parser decodes as it reads.
+ * <p>
+ * Fetches of the documents referenced from each loaded document are issued in
+ * parallel when prefetching is enabled; this loader lets them share connections.
+ * <p>
+ * With an {@link HttpCache}, documents that haven't changed since they were
+ * last retrieved cost only a round trip; see {@link #withCache(HttpCache)}.
+ * <p>
+ * Redirects are followed, including between <code>http</code> and
+ * <code>https</code>, up to {@link #MAX_REDIRECTS} of them. Any other response
+ * that isn't a success fails the load, with the status code in its message.
+ */
+public class HttpDocumentLoader implements DocumentLoader {
+
+	public static final int DEFAULT_MAX_PER_HOST = 5;
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+	public static final int DEFAULT_TIMEOUT_MILLIS = 30000;
+	public static final int MAX_REDIRECTS = 5;
+
+	private static final int BUFFER_SIZE = 65536;
+	private static final int HTTP_TEMPORARY_REDIRECT = 307;
+	private static final int HTTP_PERMANENT_REDIRECT = 308;
+	private static final String ACCEPT = "application/json, application/yaml, application/x-yaml, text/yaml, */*;q=0.5";
+
+	private int maxPerHost;
+	private int maxConcurrency;
+	private int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private HttpCache cache = null;
+	private Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+	public HttpDocumentLoader() {
+		this(DEFAULT_MAX_PER_HOST, DEFAULT_MAX_CONCURRENCY);
+	}
+
+	public HttpDocumentLoader(int maxPerHost, int maxConcurrency) {
+		this.maxPerHost = maxPerHost;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public HttpDocumentLoader withTimeout(int timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+		return this;
+	}
+
+	/**
+	 * Keep retrieved documents in an on-disk cache, and revalidate them with
+	 * conditional requests rather than downloading them again
+	 */
+	public HttpDocumentLoader withCache(HttpCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	@Override
+	public JsonNode load(URL url, DocumentParser parser) throws IOException {
+		Semaphore permits = hostPermits.computeIfAbsent(getHostKey(url), key -> new Semaphore(maxPerHost));
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for a connection to " + url.getHost());
+		}
+		try {
+			return fetch(url, parser);
+		} finally {
+			permits.release();
+		}
+	}
+
+	@Override
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	private JsonNode fetch(URL url, DocumentParser parser) throws IOException {
+		return fetch(url, parser, cache != null ? cache.get(url) : null);
+	}
+
+	private JsonNode fetch(URL url, DocumentParser parser, HttpCache.Entry cached) throws IOException {
+		URL location = url;
+		for (int redirects = 0;; redirects++) {
+			URLConnection connection = location.openConnection();
+			if (!(connection instanceof HttpURLConnection)) {
+				try (InputStream in = new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE)) {
+					return parser.parse(in);
+				}
+			}
+			HttpURLConnection http = (HttpURLConnection) connection;
+			// the JDK won't follow a redirect between http and https, so redirects are
+			// followed here
+			http.setInstanceFollowRedirects(false);
+			http.setConnectTimeout(timeoutMillis);
+			http.setReadTimeout(timeoutMillis);
+			http.setRequestProperty("Accept", ACCEPT);
+			http.setRequestProperty("Accept-Encoding", "gzip");
+			if (cached != null) {
+				if (cached.getEtag() != null) {
+					http.setRequestProperty("If-None-Match", cached.getEtag());
+				}
+				if (cached.getLastModified() != null) {
+					http.setRequestProperty("If-Modified-Since", cached.getLastModified());
+				}
+			}
+			int status = http.getResponseCode();
+			if (!isRedirect(status)) {
+				return read(url, http, status, cached, parser);
+			}
+			String target = http.getHeaderField("Location");
+			drain(http.getInputStream());
+			if (target == null) {
+				throw new IOException(String.format(
+						"Server returned HTTP response code: %d without a Location for URL: %s", status, location));
+			} else if (redirects >= MAX_REDIRECTS) {
+				throw new IOException(String.format("Too many redirects (more than %d) for URL: %s", MAX_REDIRECTS,
+						url));
+			}
+			location = new URL(location, target);
+			if (!"http".equals(location.getProtocol()) && !"https".equals(location.getProtocol())) {
+				throw new IOException(String.format("Server redirected URL: %s to unsupported URL: %s", url,
+						location));
+			}
+		}
+	}
+
+	private JsonNode read(URL url, HttpURLConnection http, int status, HttpCache.Entry cached,
+			DocumentParser parser) throws IOException {
+		if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+			drain(http.getInputStream());
+			JsonNode tree = cached.readTree(parser);
+			if (tree != null) {
+				cache.recordRevalidation();
+				return tree;
+			}
+			// the entry has gone, or changed since its validators were sent, so the
+			// document is downloaded in full
+			return fetch(url, parser, null);
+		}
+		if (status < 200 || status >= 300) {
+			drain(status >= 400 ? http.getErrorStream() : http.getInputStream());
+			if (cache != null && cached != null) {
+				cache.remove(url);
+			}
+			String message = String.format("Server returned HTTP response code: %d for URL: %s", status, url);
+			throw status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE
+					? new FileNotFoundException(message) : new IOException(message);
+		}
+		String etag = http.getHeaderField("ETag");
+		String lastModified = http.getHeaderField("Last-Modified");
+		if (cache != null && (etag != null || lastModified != null)) {
+			// keep the body, so that the cache entry can hold it along with the tree
+			cache.recordMiss();
+			byte[] body = readAll(http.getInputStream());
+			JsonNode tree = parser.parse(new ByteArrayInputStream(body));
+			cache.put(url, etag, lastModified, body, tree);
+			return tree;
+		}
+		try (InputStream in = new BufferedInputStream(http.getInputStream(), BUFFER_SIZE)) {
+			JsonNode tree = parser.parse(in);
+			drain(in);
+			return tree;
+		}
+	}
+
+	private static boolean isRedirect(int status) {
+		switch (status) {
+		case HttpURLConnection.HTTP_MOVED_PERM:
+		case HttpURLConnection.HTTP_MOVED_TEMP:
+		case HttpURLConnection.HTTP_SEE_OTHER:
+		case HTTP_TEMPORARY_REDIRECT:
+		case HTTP_PERMANENT_REDIRECT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try (InputStream stream = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = stream.read(buf)) >= 0) {
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	// reading the rest of a response, and closing it, returns the connection to the
+	// JDK's keep-alive pool
+	private static void drain(InputStream in) throws IOException {
+		if (in != null) {
+			try (InputStream stream = in) {
+				byte[] buf = new byte[4096];
+				while (stream.read(buf) >= 0) {
+				}
+			}
+		}
+	}
+
+	private static String getHostKey(URL url) {
+		return url.getProtocol() + "://" + url.getHost() + ":" + (url.getPort() >= 0 ? url.getPort()
+				: url.getDefaultPort());
+	}
+}
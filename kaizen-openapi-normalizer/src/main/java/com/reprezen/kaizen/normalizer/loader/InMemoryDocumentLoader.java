@@ -0,0 +1,88 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.ByteBufferInputStream;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Loader that serves documents from memory.
+ * <p>
+ * Documents are registered by URL. Any scheme may be used, but the
+ * <code>mem:</code> scheme is reserved for this purpose, e.g.
+ * <code>mem:/api/openapi.yaml</code>. Relative references among registered
+ * documents resolve as they would for any hierarchical URL. This is handy for
+ * tests, which can use it as a stand-in for remote documents.
+ * <p>
+ * Content may be supplied as bytes, as a {@link ByteBuffer} (which is read in
+ * place, without copying), or as a {@link Supplier} that is called each time
+ * the document is loaded. Added to a registry with
+ * {@link DocumentLoaderRegistry#withDocuments(InMemoryDocumentLoader)}, the
+ * documents are served from memory whatever their URL schemes, so a model and
+ * the documents it references can be normalized without any file system or
+ * network access.
+ */
+public class InMemoryDocumentLoader implements DocumentLoader {
+
+	public static final String SCHEME = "mem";
+
+	private Map<String, Supplier<ByteBuffer>> documents = new ConcurrentHashMap<>();
+
+	public InMemoryDocumentLoader put(String url, byte[] content) {
+		return put(url, ByteBuffer.wrap(content));
+	}
+
+	public InMemoryDocumentLoader put(String url, String content) {
+		return put(url, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public InMemoryDocumentLoader put(String url, ByteBuffer content) {
+		return put(url, () -> content);
+	}
+
+	public InMemoryDocumentLoader put(String url, Supplier<ByteBuffer> content) {
+		documents.put(url, content);
+		return this;
+	}
+
+	/**
+	 * Add documents
+	 *
+	 * @param documents
+	 *            document content keyed by URL
+	 * @return this loader
+	 */
+	public InMemoryDocumentLoader putAll(Map<String, ByteBuffer> documents) {
+		for (Map.Entry<String, ByteBuffer> entry : documents.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+		return this;
+	}
+
+	public boolean contains(URL url) {
+		return documents.containsKey(url.toString());
+	}
+
+	public InMemoryDocumentLoader remove(String url) {
+		documents.remove(url);
+		return this;
+	}
+
+	@Override
+	public JsonNode load(URL url, DocumentParser parser) throws IOException {
+		Supplier<ByteBuffer> supplier = documents.get(url.toString());
+		ByteBuffer content = supplier != null ? supplier.get() : null;
+		if (content == null) {
+			throw new FileNotFoundException(url + " (No such document)");
+		}
+		return parser.parse(new ByteBufferInputStream(content));
+	}
+}
@@ -0,0 +1,44 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+/**
+ * Loader that reads documents through {@link URL#openStream()}.
+ * <p>
+ * This is the loader used for any scheme that has no more specific loader
+ * registered, so it works for whatever URL schemes the Java platform supports.
+ */
+public class UrlDocumentLoader implements DocumentLoader {
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private int bufferSize;
+	private int maxConcurrency;
+
+	public UrlDocumentLoader() {
+		this(DEFAULT_BUFFER_SIZE, Integer.MAX_VALUE);
+	}
+
+	public UrlDocumentLoader(int bufferSize, int maxConcurrency) {
+		this.bufferSize = bufferSize;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	@Override
+	public JsonNode load(URL url, DocumentParser parser) throws IOException {
+		try (InputStream in = new BufferedInputStream(url.openStream(), bufferSize)) {
+			return parser.parse(in);
+		}
+	}
+
+	@Override
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+}
@@ -0,0 +1,106 @@
+package com.reprezen.kaizen.normalizer.loader;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Support for URL schemes that are unknown to the Java platform, but that are
+ * served by a {@link DocumentLoader}.
+ * <p>
+ * {@link URL} refuses to construct URLs for schemes that lack a stream handler.
+ * URLs with a registered virtual scheme are given a stand-in handler instead,
+ * which parses them like any other hierarchical URL. Such URLs can only be
+ * opened through their document loader.
+ * <p>
+ * Schemes are counted as they're registered, and remain usable until each
+ * registration has been withdrawn with {@link #unregister(String)}. The
+ * <code>classpath</code> and <code>mem</code> schemes are always usable.
+ */
+public class VirtualSchemes {
+
+	private static final Pattern SCHEME_PAT = Pattern.compile("^([A-Za-z][-A-Za-z0-9+.]*):");
+
+	private static Set<String> builtinSchemes = ConcurrentHashMap.newKeySet();
+	private static Map<String, Integer> schemes = new ConcurrentHashMap<>();
+	private static URLStreamHandler handler = new VirtualHandler();
+
+	static {
+		builtinSchemes.add(ClasspathDocumentLoader.SCHEME);
+		builtinSchemes.add(InMemoryDocumentLoader.SCHEME);
+	}
+
+	private VirtualSchemes() {
+	}
+
+	public static void register(String scheme) {
+		String key = scheme.toLowerCase();
+		if (!builtinSchemes.contains(key)) {
+			schemes.merge(key, 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Withdraw one registration of a scheme
+	 *
+	 * @param scheme
+	 *            the scheme
+	 * @return true if the scheme is no longer usable as a result
+	 */
+	public static boolean unregister(String scheme) {
+		String key = scheme.toLowerCase();
+		boolean[] removed = { false };
+		schemes.computeIfPresent(key, (k, count) -> {
+			removed[0] = count == 1;
+			return count > 1 ? count - 1 : null;
+		});
+		return removed[0];
+	}
+
+	public static boolean isVirtual(String scheme) {
+		if (scheme == null) {
+			return false;
+		}
+		String key = scheme.toLowerCase();
+		return builtinSchemes.contains(key) || schemes.containsKey(key);
+	}
+
+	/**
+	 * Create a URL, like {@link URL#URL(URL, String)}, but accepting virtual
+	 * schemes as well.
+	 *
+	 * @param context
+	 *            context URL, or null
+	 * @param spec
+	 *            absolute or relative URL string
+	 * @return the URL
+	 * @throws MalformedURLException
+	 *             if the URL is malformed or its scheme is unknown
+	 */
+	public static URL createUrl(URL context, String spec) throws MalformedURLException {
+		try {
+			return new URL(context, spec);
+		} catch (MalformedURLException e) {
+			Matcher m = SCHEME_PAT.matcher(spec);
+			if (m.find() && isVirtual(m.group(1))) {
+				return new URL(context, spec, handler);
+			}
+			throw e;
+		}
+	}
+
+	private static class VirtualHandler extends URLStreamHandler {
+		@Override
+		protected URLConnection openConnection(URL url) throws IOException {
+			throw new IOException(
+					String.format("URLs with scheme '%s' can only be loaded by a document loader", url.getProtocol()));
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream that reads from a {@link ByteBuffer}, e.g. a memory-mapped
+ * file.
+ * <p>
+ * The stream reads from its own view of the buffer, so the position and limit
+ * of the provided buffer are not disturbed. Mark and reset are supported at no
+ * cost, so the stream needn't be wrapped in a {@link java.io.BufferedInputStream}
+ * to be sniffed.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	private ByteBuffer buffer;
+	private int mark;
+
+	public ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer.duplicate();
+		this.mark = this.buffer.position();
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		} else if (!buffer.hasRemaining()) {
+			return -1;
+		}
+		int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+		// Buffer's method, which a Java 8 runtime has, rather than ByteBuffer's
+		// covariant override from Java 9
+		((Buffer) buffer).position(buffer.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		this.mark = buffer.position();
+	}
+
+	@Override
+	public synchronized void reset() {
+		((Buffer) buffer).position(mark);
+	}
+}
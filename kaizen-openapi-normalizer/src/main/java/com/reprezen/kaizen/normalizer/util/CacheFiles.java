@@ -0,0 +1,99 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Helpers shared by the on-disk caches.
+ * <p>
+ * Cache entries are files named by the SHA-1 hash of their key, each holding a
+ * header written with a {@link DataOutputStream}, followed by a parsed tree in
+ * the Smile binary encoding, which Jackson reads far faster than it can parse
+ * YAML.
+ */
+public class CacheFiles {
+
+	public static final ObjectMapper smileMapper = new ObjectMapper(
+			new SmileFactory().configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true));
+
+	private CacheFiles() {
+	}
+
+	/**
+	 * Write an entry file, so that concurrent readers never see a partial entry.
+	 * Failures are not reported; the entry simply isn't written.
+	 *
+	 * @param entry
+	 *            path of the entry file
+	 * @param writer
+	 *            writes the entry content
+	 */
+	public static void writeAtomically(Path entry, EntryWriter writer) {
+		Path temp = null;
+		try {
+			Files.createDirectories(entry.getParent());
+			// write to a temp file and then move it into place
+			temp = Files.createTempFile(entry.getParent(), "entry", ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				writer.write(out);
+			}
+			try {
+				Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e1) {
+				}
+			}
+		}
+	}
+
+	public static String sha1Hex(String s) {
+		return toHex(sha1().digest(s.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	public static byte[] sha1(ByteBuffer content) {
+		MessageDigest digest = sha1();
+		digest.update(content);
+		return digest.digest();
+	}
+
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	@FunctionalInterface
+	public interface EntryWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+}
@@ -0,0 +1,151 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BaseJsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+
+/**
+ * A compact, read-only array node; see {@link CompactNode}.
+ */
+public final class CompactArrayNode extends CompactNode {
+
+	private final JsonNode[] elements;
+
+	CompactArrayNode(JsonNode[] elements) {
+		this.elements = elements;
+	}
+
+	@Override
+	public JsonNodeType getNodeType() {
+		return JsonNodeType.ARRAY;
+	}
+
+	@Override
+	public JsonToken asToken() {
+		return JsonToken.START_ARRAY;
+	}
+
+	@Override
+	public int size() {
+		return elements.length;
+	}
+
+	@Override
+	public JsonNode get(int index) {
+		return index >= 0 && index < elements.length ? elements[index] : null;
+	}
+
+	@Override
+	public JsonNode get(String fieldName) {
+		return null;
+	}
+
+	@Override
+	protected JsonNode _at(JsonPointer ptr) {
+		return get(ptr.getMatchingIndex());
+	}
+
+	@Override
+	public Iterator<JsonNode> elements() {
+		return Arrays.asList(elements).iterator();
+	}
+
+	@Override
+	public JsonNode findValue(String fieldName) {
+		for (JsonNode element : elements) {
+			JsonNode value = element.findValue(fieldName);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public JsonNode findParent(String fieldName) {
+		for (JsonNode element : elements) {
+			JsonNode parent = element.findParent(fieldName);
+			if (parent != null) {
+				return parent;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<JsonNode> findValues(String fieldName, List<JsonNode> foundSoFar) {
+		for (JsonNode element : elements) {
+			foundSoFar = element.findValues(fieldName, foundSoFar);
+		}
+		return foundSoFar;
+	}
+
+	@Override
+	public List<String> findValuesAsText(String fieldName, List<String> foundSoFar) {
+		for (JsonNode element : elements) {
+			foundSoFar = element.findValuesAsText(fieldName, foundSoFar);
+		}
+		return foundSoFar;
+	}
+
+	@Override
+	public List<JsonNode> findParents(String fieldName, List<JsonNode> foundSoFar) {
+		for (JsonNode element : elements) {
+			foundSoFar = element.findParents(fieldName, foundSoFar);
+		}
+		return foundSoFar;
+	}
+
+	@Override
+	public ArrayNode materialize() {
+		ArrayNode node = JsonNodeFactory.instance.arrayNode();
+		for (JsonNode element : elements) {
+			node.add(CompactNode.materialize(element));
+		}
+		return node;
+	}
+
+	@Override
+	public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeStartArray();
+		serializeElements(gen, provider);
+		gen.writeEndArray();
+	}
+
+	@Override
+	public void serializeWithType(JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer)
+			throws IOException {
+		typeSer.writeTypePrefixForArray(this, gen);
+		serializeElements(gen, provider);
+		typeSer.writeTypeSuffixForArray(this, gen);
+	}
+
+	private void serializeElements(JsonGenerator gen, SerializerProvider provider) throws IOException {
+		for (JsonNode element : elements) {
+			((BaseJsonNode) element).serialize(gen, provider);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj == this
+				|| obj instanceof CompactArrayNode && Arrays.equals(elements, ((CompactArrayNode) obj).elements);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(elements);
+	}
+}
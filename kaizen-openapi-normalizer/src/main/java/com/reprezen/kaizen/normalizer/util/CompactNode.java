@@ -0,0 +1,79 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BaseJsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+/**
+ * Base class for compact, read-only container nodes.
+ * <p>
+ * A compact object holds its field names and values in a pair of arrays, and a
+ * compact array holds its elements in an array, rather than in the hash map or
+ * list of a Jackson {@link com.fasterxml.jackson.databind.node.ObjectNode} or
+ * {@link com.fasterxml.jackson.databind.node.ArrayNode}. Scalar values are
+ * ordinary Jackson value nodes, which are immutable, and repeated field names
+ * and short strings share a single instance, so a compact tree needs much less
+ * heap than the equivalent Jackson tree.
+ * <p>
+ * Compact nodes support all of the read-only {@link JsonNode} API, including
+ * {@link JsonNode#at(com.fasterxml.jackson.core.JsonPointer)}, and can be
+ * serialized. They cannot be altered; {@link #materialize()} produces an
+ * ordinary mutable Jackson tree with the same content, for code that needs to
+ * alter it. Since compact nodes are immutable, {@link #deepCopy()} returns the
+ * node itself.
+ * <p>
+ * Equality is structural among compact nodes only: a compact container is
+ * never equal to a Jackson container, even one with the same content. To
+ * compare content with a Jackson tree, compare the Jackson tree with the
+ * compact node's {@link #materialize()} form.
+ */
+public abstract class CompactNode extends BaseJsonNode {
+
+	/**
+	 * Create a mutable Jackson tree with the same content as this node.
+	 * <p>
+	 * Value nodes are shared, not copied, since they're immutable.
+	 *
+	 * @return the new tree
+	 */
+	public abstract JsonNode materialize();
+
+	/**
+	 * Obtain a mutable version of any tree
+	 *
+	 * @param node
+	 *            a tree, which may or may not be compact
+	 * @return the node itself if it's not compact, else its materialized form
+	 */
+	public static JsonNode materialize(JsonNode node) {
+		return node instanceof CompactNode ? ((CompactNode) node).materialize() : node;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends JsonNode> T deepCopy() {
+		return (T) this;
+	}
+
+	@Override
+	public String asText() {
+		return "";
+	}
+
+	@Override
+	public JsonNode path(int index) {
+		JsonNode node = get(index);
+		return node != null ? node : MissingNode.getInstance();
+	}
+
+	@Override
+	public JsonNode path(String fieldName) {
+		JsonNode node = get(fieldName);
+		return node != null ? node : MissingNode.getInstance();
+	}
+
+	@Override
+	public String toString() {
+		return materialize().toString();
+	}
+}
@@ -0,0 +1,274 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.BaseJsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A compact, read-only object node; see {@link CompactNode}.
+ * <p>
+ * Fields are kept in declaration order. Small objects are searched by field
+ * name directly; larger ones get a sorted index on first lookup, so lookups in,
+ * say, a <code>definitions</code> object with thousands of entries are
+ * logarithmic.
+ */
+public final class CompactObjectNode extends CompactNode {
+
+	private static final int INDEX_THRESHOLD = 8;
+
+	private final String[] names;
+	private final JsonNode[] values;
+	private volatile int[] sortedIndex = null;
+
+	CompactObjectNode(String[] names, JsonNode[] values) {
+		this.names = names;
+		this.values = values;
+	}
+
+	@Override
+	public JsonNodeType getNodeType() {
+		return JsonNodeType.OBJECT;
+	}
+
+	@Override
+	public JsonToken asToken() {
+		return JsonToken.START_OBJECT;
+	}
+
+	@Override
+	public int size() {
+		return names.length;
+	}
+
+	@Override
+	public JsonNode get(String fieldName) {
+		int i = indexOf(fieldName);
+		return i >= 0 ? values[i] : null;
+	}
+
+	@Override
+	public JsonNode get(int index) {
+		return null;
+	}
+
+	@Override
+	protected JsonNode _at(JsonPointer ptr) {
+		return get(ptr.getMatchingProperty());
+	}
+
+	@Override
+	public Iterator<JsonNode> elements() {
+		return iterator(i -> values[i]);
+	}
+
+	@Override
+	public Iterator<String> fieldNames() {
+		return iterator(i -> names[i]);
+	}
+
+	@Override
+	public Iterator<Entry<String, JsonNode>> fields() {
+		return iterator(i -> new SimpleImmutableEntry<>(names[i], values[i]));
+	}
+
+	@Override
+	public JsonNode findValue(String fieldName) {
+		for (int i = 0; i < names.length; i++) {
+			if (fieldName.equals(names[i])) {
+				return values[i];
+			}
+			JsonNode value = values[i].findValue(fieldName);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public JsonNode findParent(String fieldName) {
+		for (int i = 0; i < names.length; i++) {
+			if (fieldName.equals(names[i])) {
+				return this;
+			}
+			JsonNode value = values[i].findParent(fieldName);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<JsonNode> findValues(String fieldName, List<JsonNode> foundSoFar) {
+		for (int i = 0; i < names.length; i++) {
+			if (fieldName.equals(names[i])) {
+				foundSoFar = foundSoFar != null ? foundSoFar : new ArrayList<>();
+				foundSoFar.add(values[i]);
+			} else {
+				// only add children if parent not added
+				foundSoFar = values[i].findValues(fieldName, foundSoFar);
+			}
+		}
+		return foundSoFar;
+	}
+
+	@Override
+	public List<String> findValuesAsText(String fieldName, List<String> foundSoFar) {
+		for (int i = 0; i < names.length; i++) {
+			if (fieldName.equals(names[i])) {
+				foundSoFar = foundSoFar != null ? foundSoFar : new ArrayList<>();
+				foundSoFar.add(values[i].asText());
+			} else {
+				foundSoFar = values[i].findValuesAsText(fieldName, foundSoFar);
+			}
+		}
+		return foundSoFar;
+	}
+
+	@Override
+	public List<JsonNode> findParents(String fieldName, List<JsonNode> foundSoFar) {
+		for (int i = 0; i < names.length; i++) {
+			if (fieldName.equals(names[i])) {
+				foundSoFar = foundSoFar != null ? foundSoFar : new ArrayList<>();
+				foundSoFar.add(this);
+			} else {
+				foundSoFar = values[i].findParents(fieldName, foundSoFar);
+			}
+		}
+		return foundSoFar;
+	}
+
+	@Override
+	public ObjectNode materialize() {
+		ObjectNode node = JsonNodeFactory.instance.objectNode();
+		for (int i = 0; i < names.length; i++) {
+			node.set(names[i], CompactNode.materialize(values[i]));
+		}
+		return node;
+	}
+
+	@Override
+	public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeStartObject();
+		serializeFields(gen, provider);
+		gen.writeEndObject();
+	}
+
+	@Override
+	public void serializeWithType(JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer)
+			throws IOException {
+		typeSer.writeTypePrefixForObject(this, gen);
+		serializeFields(gen, provider);
+		typeSer.writeTypeSuffixForObject(this, gen);
+	}
+
+	private void serializeFields(JsonGenerator gen, SerializerProvider provider) throws IOException {
+		for (int i = 0; i < names.length; i++) {
+			gen.writeFieldName(names[i]);
+			((BaseJsonNode) values[i]).serialize(gen, provider);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (!(obj instanceof CompactObjectNode) || ((CompactObjectNode) obj).names.length != names.length) {
+			return false;
+		}
+		CompactObjectNode other = (CompactObjectNode) obj;
+		for (int i = 0; i < names.length; i++) {
+			if (!values[i].equals(other.get(names[i]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// independent of field order, as equality is
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int i = 0; i < names.length; i++) {
+			hash += names[i].hashCode() ^ values[i].hashCode();
+		}
+		return hash;
+	}
+
+	private int indexOf(String fieldName) {
+		if (names.length <= INDEX_THRESHOLD) {
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(fieldName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int[] index = getSortedIndex();
+		int low = 0;
+		int high = index.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = names[index[mid]].compareTo(fieldName);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return index[mid];
+			}
+		}
+		return -1;
+	}
+
+	// racing threads may each compute the index; they all get the same result
+	private int[] getSortedIndex() {
+		int[] index = sortedIndex;
+		if (index == null) {
+			Integer[] order = IntStream.range(0, names.length).boxed().toArray(Integer[]::new);
+			Arrays.sort(order, Comparator.comparing(i -> names[i]));
+			index = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+			sortedIndex = index;
+		}
+		return index;
+	}
+
+	private <T> Iterator<T> iterator(IntFunction<T> item) {
+		return new Iterator<T>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < names.length;
+			}
+
+			@Override
+			public T next() {
+				if (next >= names.length) {
+					throw new NoSuchElementException();
+				}
+				return item.apply(next++);
+			}
+		};
+	}
+}
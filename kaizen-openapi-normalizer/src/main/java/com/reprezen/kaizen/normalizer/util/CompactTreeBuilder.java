@@ -0,0 +1,216 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonParser.NumberType;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+/**
+ * Builds {@link CompactNode} trees, either straight from a parser's token
+ * stream or from an existing tree.
+ * <p>
+ * Field names and short text values are obtained from a {@link SymbolTable},
+ * so recurring names like <code>type</code> and <code>description</code>, and
+ * values like <code>string</code>, are held only once across everything built
+ * with that table.
+ * <p>
+ * Values are represented as they would be by
+ * {@link com.fasterxml.jackson.databind.ObjectMapper#readTree(JsonParser)} with
+ * default settings, so the materialized form of a compact tree is equal to the
+ * tree Jackson would have produced. Builders are not thread-safe.
+ */
+public class CompactTreeBuilder {
+
+	private static final int MAX_SEARCHED_NAMES = 8;
+	private static final JsonNode[] NO_NODES = new JsonNode[0];
+	private static final String[] NO_NAMES = new String[0];
+
+	private SymbolTable symbols;
+
+	/**
+	 * Create a builder with a symbol table of its own
+	 */
+	public CompactTreeBuilder() {
+		this(new SymbolTable());
+	}
+
+	/**
+	 * @param symbols
+	 *            table supplying field names and text values
+	 */
+	public CompactTreeBuilder(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Read a complete value from a parser.
+	 * <p>
+	 * The parser may be positioned before the value, or at its first token.
+	 *
+	 * @param parser
+	 *            parser supplying the value
+	 * @return the compact tree, or a value node for a scalar document
+	 * @throws IOException
+	 *             if the parser fails, or has no content
+	 */
+	public JsonNode read(JsonParser parser) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if (token == null) {
+			token = parser.nextToken();
+			if (token == null) {
+				throw JsonMappingException.from(parser, "No content to map due to end-of-input");
+			}
+		}
+		return readValue(parser, token);
+	}
+
+	/**
+	 * Produce a compact version of an existing tree
+	 *
+	 * @param node
+	 *            the tree, which is not altered
+	 * @return the compact tree; a compact or scalar node is returned as is
+	 */
+	public JsonNode compact(JsonNode node) {
+		if (node instanceof CompactNode) {
+			return node;
+		} else if (node.isObject()) {
+			String[] fieldNames = new String[node.size()];
+			JsonNode[] values = new JsonNode[node.size()];
+			int i = 0;
+			for (Iterator<Entry<String, JsonNode>> iter = node.fields(); iter.hasNext(); i++) {
+				Entry<String, JsonNode> field = iter.next();
+				fieldNames[i] = name(field.getKey());
+				values[i] = compact(field.getValue());
+			}
+			return new CompactObjectNode(fieldNames, values);
+		} else if (node.isArray()) {
+			JsonNode[] elements = new JsonNode[node.size()];
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = compact(node.get(i));
+			}
+			return new CompactArrayNode(elements);
+		} else if (node.isTextual()) {
+			return text(node.textValue());
+		} else {
+			return node;
+		}
+	}
+
+	private JsonNode readValue(JsonParser parser, JsonToken token) throws IOException {
+		switch (token) {
+		case START_OBJECT:
+			return readObject(parser);
+		case START_ARRAY:
+			return readArray(parser);
+		case VALUE_STRING:
+			return text(parser.getText());
+		case VALUE_NUMBER_INT:
+			NumberType intType = parser.getNumberType();
+			if (intType == NumberType.INT) {
+				return IntNode.valueOf(parser.getIntValue());
+			} else if (intType == NumberType.LONG) {
+				return LongNode.valueOf(parser.getLongValue());
+			} else {
+				return BigIntegerNode.valueOf(parser.getBigIntegerValue());
+			}
+		case VALUE_NUMBER_FLOAT:
+			return parser.getNumberType() == NumberType.BIG_DECIMAL ? DecimalNode.valueOf(parser.getDecimalValue())
+					: DoubleNode.valueOf(parser.getDoubleValue());
+		case VALUE_TRUE:
+			return BooleanNode.TRUE;
+		case VALUE_FALSE:
+			return BooleanNode.FALSE;
+		case VALUE_NULL:
+			return NullNode.getInstance();
+		case VALUE_EMBEDDED_OBJECT:
+			return embedded(parser.getEmbeddedObject());
+		default:
+			throw JsonMappingException.from(parser, "Unexpected token " + token);
+		}
+	}
+
+	private JsonNode readObject(JsonParser parser) throws IOException {
+		List<String> fieldNames = new ArrayList<>();
+		List<JsonNode> values = new ArrayList<>();
+		// positions of names, once there are too many to search
+		Map<String, Integer> positions = null;
+		JsonToken token;
+		while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+			String name = name(parser.getCurrentName());
+			JsonNode value = readValue(parser, parser.nextToken());
+			// as in ObjectNode, a repeated name replaces the earlier value in place
+			int existing = positions != null ? positions.getOrDefault(name, -1) : fieldNames.indexOf(name);
+			if (existing >= 0) {
+				values.set(existing, value);
+			} else {
+				if (positions != null) {
+					positions.put(name, fieldNames.size());
+				} else if (fieldNames.size() >= MAX_SEARCHED_NAMES) {
+					positions = new HashMap<>();
+					for (int i = 0; i < fieldNames.size(); i++) {
+						positions.put(fieldNames.get(i), i);
+					}
+					positions.put(name, fieldNames.size());
+				}
+				fieldNames.add(name);
+				values.add(value);
+			}
+		}
+		if (token != JsonToken.END_OBJECT) {
+			throw JsonMappingException.from(parser, "Unexpected token " + token + " in object");
+		}
+		return new CompactObjectNode(fieldNames.toArray(NO_NAMES), values.toArray(NO_NODES));
+	}
+
+	private JsonNode readArray(JsonParser parser) throws IOException {
+		List<JsonNode> elements = new ArrayList<>();
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			if (token == null) {
+				throw JsonMappingException.from(parser, "Unexpected end-of-input in array");
+			}
+			elements.add(readValue(parser, token));
+		}
+		return new CompactArrayNode(elements.toArray(NO_NODES));
+	}
+
+	private JsonNode embedded(Object value) {
+		if (value == null) {
+			return NullNode.getInstance();
+		} else if (value instanceof byte[]) {
+			return BinaryNode.valueOf((byte[]) value);
+		} else if (value instanceof JsonNode) {
+			return (JsonNode) value;
+		} else {
+			return new POJONode(value);
+		}
+	}
+
+	private String name(String name) {
+		return symbols.name(name);
+	}
+
+	private TextNode text(String value) {
+		return symbols.text(value);
+	}
+}
@@ -0,0 +1,316 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/**
+ * Class to parse JSON and YAML documents directly from a byte stream.
+ * <p>
+ * The format and character encoding of a document are sniffed from its first
+ * few bytes: a byte order mark is honored if present, and otherwise the
+ * placement of zero bytes among the first few characters determines whether
+ * the content is UTF-8, UTF-16 or UTF-32 (the same heuristic as RFC 4627). If
+ * the first non-whitespace character is <code>{</code>, the document is parsed
+ * as JSON; otherwise it is parsed as YAML.
+ * <p>
+ * The stream itself is handed to the Jackson parser, so the document text is
+ * never collected into a string. Peak memory for a load is essentially that of
+ * the resulting tree.
+ * <p>
+ * Gzip-compressed documents are recognized by their magic bytes, and are
+ * decompressed as they're parsed. Zstandard-compressed documents are recognized
+ * too, but can't be decompressed, so they're rejected with an explanation.
+ * <p>
+ * A parser created with {@link #withReferenceListener(Consumer)} reports the
+ * <code>$ref</code> values in UTF-8 documents as the parser reaches them in the
+ * byte stream, well before the parsed tree is available; see
+ * {@link RefSniffingInputStream}.
+ * <p>
+ * A parser created with {@link #withCompactTrees()} produces read-only
+ * {@link CompactNode} trees in place of ordinary Jackson trees. One created
+ * with {@link #withSymbolTable(SymbolTable)} shares field names and short
+ * string values with all other documents parsed with the same table.
+ */
+public class DocumentParser {
+
+	private static final int SNIFF_LENGTH = 256;
+
+	private static ObjectMapper jsonMapper = new ObjectMapper();
+	private static ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+
+	private Consumer<String> referenceListener = null;
+	private boolean compactTrees = false;
+	private SymbolTable symbols = null;
+
+	/**
+	 * Create a parser that also reports likely <code>$ref</code> values while it
+	 * reads each document.
+	 *
+	 * @param listener
+	 *            receives <code>$ref</code> values; may be called before
+	 *            {@link #parse(InputStream)} returns, on the parsing thread
+	 * @return the new parser
+	 */
+	public DocumentParser withReferenceListener(Consumer<String> listener) {
+		DocumentParser parser = copy();
+		parser.referenceListener = listener;
+		return parser;
+	}
+
+	/**
+	 * Create a parser that produces compact, read-only trees.
+	 *
+	 * @return the new parser
+	 * @see CompactNode
+	 */
+	public DocumentParser withCompactTrees() {
+		DocumentParser parser = copy();
+		parser.compactTrees = true;
+		return parser;
+	}
+
+	/**
+	 * Create a parser that obtains field names and short text values from the
+	 * given table.
+	 *
+	 * @param symbols
+	 *            the table, which may be shared by any number of parsers
+	 * @return the new parser
+	 */
+	public DocumentParser withSymbolTable(SymbolTable symbols) {
+		DocumentParser parser = copy();
+		parser.symbols = symbols;
+		return parser;
+	}
+
+	private DocumentParser copy() {
+		DocumentParser parser = new DocumentParser();
+		parser.referenceListener = referenceListener;
+		parser.compactTrees = compactTrees;
+		parser.symbols = symbols;
+		return parser;
+	}
+
+	/**
+	 * Parse a JSON or YAML document from the given stream.
+	 * <p>
+	 * The stream is consumed but not closed. A stream that supports mark and
+	 * reset, like a {@link ByteBufferInputStream} over a mapped file, is read
+	 * directly; any other is buffered. A single parser may be used from multiple
+	 * threads at once.
+	 *
+	 * @param in
+	 *            stream positioned at the start of the document
+	 * @return the parsed tree
+	 * @throws IOException
+	 *             if the stream cannot be read, or its content cannot be parsed
+	 */
+	public JsonNode parse(InputStream in) throws IOException {
+		InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in);
+		buffered.mark(SNIFF_LENGTH);
+		byte[] prefix = new byte[SNIFF_LENGTH];
+		int len = readPrefix(buffered, prefix);
+		buffered.reset();
+		switch (getCompression(prefix, len)) {
+		case GZIP:
+			try (InputStream decompressed = new GZIPInputStream(new NonClosingInputStream(buffered))) {
+				return parse(decompressed);
+			}
+		case ZSTD:
+			throw new IOException("Document is Zstandard-compressed, which is not supported; use gzip instead");
+		case NONE:
+		default:
+			break;
+		}
+		Sniff sniff = sniff(prefix, len);
+		InputStream source = referenceListener != null && sniff.getCharset() == StandardCharsets.UTF_8
+				? new RefSniffingInputStream(buffered, referenceListener) : buffered;
+		if (sniff.getFormat() == Format.JSON) {
+			// Jackson's own byte-level bootstrapping handles BOMs and all the unicode
+			// encodings for JSON
+			return readTree(jsonMapper, new NonClosingInputStream(source));
+		} else if (sniff.getCharset() == StandardCharsets.UTF_8) {
+			// The YAML scanner skips a leading UTF-8 BOM on its own
+			return readTree(yamlMapper, new NonClosingInputStream(source));
+		} else {
+			skipFully(buffered, sniff.getBomLength());
+			return readTree(yamlMapper, new InputStreamReader(new NonClosingInputStream(buffered), sniff.getCharset()));
+		}
+	}
+
+	private JsonNode readTree(ObjectMapper mapper, InputStream in) throws IOException {
+		return compactTrees || symbols != null ? readTree(mapper, mapper.getFactory().createParser(in))
+				: mapper.readTree(in);
+	}
+
+	private JsonNode readTree(ObjectMapper mapper, Reader reader) throws IOException {
+		return compactTrees || symbols != null ? readTree(mapper, mapper.getFactory().createParser(reader))
+				: mapper.readTree(reader);
+	}
+
+	private JsonNode readTree(ObjectMapper mapper, JsonParser parser) throws IOException {
+		try (JsonParser closing = parser) {
+			if (compactTrees) {
+				return new CompactTreeBuilder(symbols != null ? symbols : new SymbolTable()).read(parser);
+			} else {
+				return mapper.reader().with(symbols.getNodeFactory()).readTree(symbols.interning(parser));
+			}
+		}
+	}
+
+	/**
+	 * Determine format and encoding of a document from its initial bytes.
+	 *
+	 * @param prefix
+	 *            buffer containing the first bytes of the document
+	 * @param len
+	 *            number of valid bytes in the buffer
+	 * @return sniffed format, encoding, and byte order mark length
+	 */
+	public static Sniff sniff(byte[] prefix, int len) {
+		int b0 = len > 0 ? prefix[0] & 0xFF : -1;
+		int b1 = len > 1 ? prefix[1] & 0xFF : -1;
+		int b2 = len > 2 ? prefix[2] & 0xFF : -1;
+		int b3 = len > 3 ? prefix[3] & 0xFF : -1;
+		Charset charset;
+		int bomLength = 0;
+		if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+			charset = StandardCharsets.UTF_8;
+			bomLength = 3;
+		} else if (b0 == 0x00 && b1 == 0x00 && b2 == 0xFE && b3 == 0xFF) {
+			charset = Charset.forName("UTF-32BE");
+			bomLength = 4;
+		} else if (b0 == 0xFF && b1 == 0xFE && b2 == 0x00 && b3 == 0x00) {
+			charset = Charset.forName("UTF-32LE");
+			bomLength = 4;
+		} else if (b0 == 0xFE && b1 == 0xFF) {
+			charset = StandardCharsets.UTF_16BE;
+			bomLength = 2;
+		} else if (b0 == 0xFF && b1 == 0xFE) {
+			charset = StandardCharsets.UTF_16LE;
+			bomLength = 2;
+		} else if (b0 == 0x00 && b1 == 0x00 && b2 == 0x00 && b3 > 0) {
+			charset = Charset.forName("UTF-32BE");
+		} else if (b0 > 0 && b1 == 0x00 && b2 == 0x00 && b3 == 0x00) {
+			charset = Charset.forName("UTF-32LE");
+		} else if (b0 == 0x00 && b1 > 0) {
+			charset = StandardCharsets.UTF_16BE;
+		} else if (b0 > 0 && b1 == 0x00) {
+			charset = StandardCharsets.UTF_16LE;
+		} else {
+			charset = StandardCharsets.UTF_8;
+		}
+		String start = new String(prefix, bomLength, Math.max(len - bomLength, 0), charset);
+		Format format = Format.YAML;
+		for (int i = 0; i < start.length(); i++) {
+			char c = start.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				format = c == '{' ? Format.JSON : Format.YAML;
+				break;
+			}
+		}
+		return new Sniff(format, charset, bomLength);
+	}
+
+	/**
+	 * Determine whether a document is compressed, from its initial bytes.
+	 *
+	 * @param prefix
+	 *            buffer containing the first bytes of the document
+	 * @param len
+	 *            number of valid bytes in the buffer
+	 * @return the compression scheme, if any
+	 */
+	public static Compression getCompression(byte[] prefix, int len) {
+		if (len >= 2 && (prefix[0] & 0xFF) == 0x1F && (prefix[1] & 0xFF) == 0x8B) {
+			return Compression.GZIP;
+		} else if (len >= 4 && (prefix[0] & 0xFF) == 0x28 && (prefix[1] & 0xFF) == 0xB5
+				&& (prefix[2] & 0xFF) == 0x2F && (prefix[3] & 0xFF) == 0xFD) {
+			return Compression.ZSTD;
+		} else {
+			return Compression.NONE;
+		}
+	}
+
+	private static int readPrefix(InputStream in, byte[] buf) throws IOException {
+		int len = 0;
+		while (len < buf.length) {
+			int count = in.read(buf, len, buf.length - len);
+			if (count < 0) {
+				break;
+			}
+			len += count;
+		}
+		return len;
+	}
+
+	private static void skipFully(InputStream in, int n) throws IOException {
+		while (n > 0) {
+			long skipped = in.skip(n);
+			if (skipped <= 0) {
+				break;
+			}
+			n -= skipped;
+		}
+	}
+
+	public enum Format {
+		JSON, YAML
+	}
+
+	public enum Compression {
+		NONE, GZIP, ZSTD
+	}
+
+	/**
+	 * Result of sniffing the start of a document
+	 */
+	public static class Sniff {
+		private Format format;
+		private Charset charset;
+		private int bomLength;
+
+		private Sniff(Format format, Charset charset, int bomLength) {
+			this.format = format;
+			this.charset = charset;
+			this.bomLength = bomLength;
+		}
+
+		public Format getFormat() {
+			return format;
+		}
+
+		public Charset getCharset() {
+			return charset;
+		}
+
+		public int getBomLength() {
+			return bomLength;
+		}
+	}
+
+	// Jackson closes its source when it's done parsing; we leave that to whoever
+	// opened the stream
+	private static class NonClosingInputStream extends FilterInputStream {
+		private NonClosingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
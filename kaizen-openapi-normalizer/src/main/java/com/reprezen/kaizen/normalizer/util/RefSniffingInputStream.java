@@ -0,0 +1,159 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * An input stream that spots <code>$ref</code> values in UTF-8 JSON or YAML
+ * text as it's read.
+ * <p>
+ * Both <code>"$ref": "value"</code> and <code>$ref: value</code> forms are
+ * recognized, with or without quotes around the key or the value. Each value
+ * is reported as soon as the bytes containing it have passed through the
+ * stream, i.e. while the parser reading the stream is still working on the
+ * rest of the document. Values starting with <code>#</code> (references within
+ * the same document) are not reported.
+ * <p>
+ * This is a byte-level heuristic, not a parse: a <code>$ref</code> appearing in
+ * a description, for instance, is reported too. Reported values are suitable
+ * only for speculative work, like prefetching.
+ */
+public class RefSniffingInputStream extends FilterInputStream {
+
+	private static final byte[] KEY = "$ref".getBytes(StandardCharsets.US_ASCII);
+	private static final int MAX_VALUE_LENGTH = 2048;
+
+	private Consumer<String> listener;
+	private Scan scan = Scan.KEY;
+	private int keyIndex = 0;
+	private int quote = -1;
+	private ByteArrayOutputStream value = new ByteArrayOutputStream();
+
+	/**
+	 * @param in
+	 *            stream of UTF-8 document text
+	 * @param listener
+	 *            receives each <code>$ref</code> value found
+	 */
+	public RefSniffingInputStream(InputStream in, Consumer<String> listener) {
+		super(in);
+		this.listener = listener;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			scan(b);
+		} else {
+			end();
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int count = super.read(b, off, len);
+		for (int i = 0; i < count; i++) {
+			scan(b[off + i] & 0xFF);
+		}
+		if (count < 0) {
+			end();
+		}
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		// skipped bytes must be scanned too
+		byte[] buf = new byte[(int) Math.min(n, 4096)];
+		int count = read(buf, 0, buf.length);
+		return Math.max(count, 0);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	private void scan(int b) {
+		switch (scan) {
+		case KEY:
+			if (b == KEY[keyIndex]) {
+				if (++keyIndex == KEY.length) {
+					keyIndex = 0;
+					scan = Scan.COLON;
+				}
+			} else {
+				keyIndex = b == KEY[0] ? 1 : 0;
+			}
+			break;
+		case COLON:
+			if (b == ':') {
+				scan = Scan.VALUE_START;
+			} else if (b != '"' && b != '\'' && b != ' ' && b != '\t') {
+				restart(b);
+			}
+			break;
+		case VALUE_START:
+			if (b == '"' || b == '\'') {
+				quote = b;
+				scan = Scan.VALUE;
+			} else if (b == '#' || b == '\n' || b == '\r') {
+				restart(b);
+			} else if (b != ' ' && b != '\t') {
+				quote = -1;
+				scan = Scan.VALUE;
+				value.write(b);
+			}
+			break;
+		case VALUE:
+			if (quote >= 0 ? b == quote : isUnquotedValueEnd(b)) {
+				report();
+				restart(b);
+			} else if (b == '\n' || b == '\r' || value.size() >= MAX_VALUE_LENGTH) {
+				restart(b);
+			} else {
+				if (value.size() == 0 && b == '#') {
+					restart(b);
+				} else {
+					value.write(b);
+				}
+			}
+			break;
+		}
+	}
+
+	// a plain value may run to the end of the document
+	private void end() {
+		if (scan == Scan.VALUE && quote < 0) {
+			report();
+		}
+		restart(-1);
+	}
+
+	private void report() {
+		if (value.size() > 0) {
+			listener.accept(new String(value.toByteArray(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private void restart(int b) {
+		value.reset();
+		scan = Scan.KEY;
+		keyIndex = b == KEY[0] ? 1 : 0;
+	}
+
+	// end of a plain YAML scalar, in block or flow style
+	private static boolean isUnquotedValueEnd(int b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == ',' || b == '}' || b == ']';
+	}
+
+	private enum Scan {
+		KEY, COLON, VALUE_START, VALUE
+	}
+}
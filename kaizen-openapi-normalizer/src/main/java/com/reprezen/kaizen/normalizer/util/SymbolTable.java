@@ -0,0 +1,198 @@
+package com.reprezen.kaizen.normalizer.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+/**
+ * Table of field names, and optionally short text values, shared by all the
+ * documents parsed in a normalization.
+ * <p>
+ * Names like <code>type</code>, <code>description</code> and
+ * <code>$ref</code>, and values like <code>string</code> and
+ * <code>application/json</code>, recur throughout a large set of documents.
+ * Parsed trees that obtain them from a common table hold a single instance of
+ * each, instead of one per occurrence.
+ * <p>
+ * The table keeps a running estimate of the heap it has saved: each time it
+ * hands out an existing instance in place of a distinct equal one, the size of
+ * the duplicate is counted. The estimate assumes a 64-bit JVM with compressed
+ * references.
+ * <p>
+ * Tables are thread-safe, and are meant to live only as long as the
+ * normalization that uses them.
+ */
+public class SymbolTable {
+
+	public static final int DEFAULT_MAX_VALUE_LENGTH = 32;
+
+	// String header, hash and array reference; char[] header and length
+	private static final int STRING_OVERHEAD = 24 + 16;
+	// TextNode header and value reference
+	private static final int TEXT_NODE_SIZE = 16;
+
+	private Map<String, String> names = new ConcurrentHashMap<>();
+	private Map<String, TextNode> values = new ConcurrentHashMap<>();
+	private int maxValueLength;
+	private LongAdder sharedCount = new LongAdder();
+	private LongAdder savedBytes = new LongAdder();
+	private JsonNodeFactory nodeFactory = new InterningNodeFactory();
+
+	/**
+	 * Create a table that interns field names, and text values of up to
+	 * {@value #DEFAULT_MAX_VALUE_LENGTH} characters
+	 */
+	public SymbolTable() {
+		this(DEFAULT_MAX_VALUE_LENGTH);
+	}
+
+	/**
+	 * @param maxValueLength
+	 *            longest text value to intern; zero to intern field names only
+	 */
+	public SymbolTable(int maxValueLength) {
+		this.maxValueLength = maxValueLength;
+	}
+
+	/**
+	 * Obtain the shared instance of a field name
+	 *
+	 * @param name
+	 *            the field name
+	 * @return an equal string, shared by all callers
+	 */
+	public String name(String name) {
+		String shared = names.putIfAbsent(name, name);
+		if (shared == null) {
+			return name;
+		} else if (shared != name) {
+			// parsers that canonicalize names themselves may already be sharing
+			recordSharing(stringSize(name));
+		}
+		return shared;
+	}
+
+	/**
+	 * Obtain a text node for the given value, shared with all callers if the value
+	 * is short enough
+	 *
+	 * @param value
+	 *            the text value
+	 * @return the text node
+	 */
+	public TextNode text(String value) {
+		if (value.length() > maxValueLength) {
+			return TextNode.valueOf(value);
+		}
+		TextNode shared = values.get(value);
+		if (shared == null) {
+			TextNode node = TextNode.valueOf(value);
+			shared = values.putIfAbsent(value, node);
+			if (shared == null) {
+				return node;
+			}
+		}
+		recordSharing(stringSize(value) + TEXT_NODE_SIZE);
+		return shared;
+	}
+
+	/**
+	 * Wrap a parser so that the field names it reports come from this table
+	 *
+	 * @param parser
+	 *            the parser
+	 * @return the wrapped parser
+	 */
+	public JsonParser interning(JsonParser parser) {
+		return new InterningParser(parser);
+	}
+
+	/**
+	 * @return a node factory that creates text nodes with {@link #text(String)}
+	 */
+	public JsonNodeFactory getNodeFactory() {
+		return nodeFactory;
+	}
+
+	public int getNameCount() {
+		return names.size();
+	}
+
+	public int getValueCount() {
+		return values.size();
+	}
+
+	/**
+	 * @return number of times an existing instance was handed out in place of a
+	 *         duplicate
+	 */
+	public long getSharedCount() {
+		return sharedCount.sum();
+	}
+
+	/**
+	 * @return estimated number of heap bytes saved by sharing
+	 */
+	public long getSavedBytes() {
+		return savedBytes.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d names and %d values interned; %d duplicates shared, saving about %d KB",
+				getNameCount(), getValueCount(), getSharedCount(), getSavedBytes() / 1024);
+	}
+
+	private void recordSharing(long bytes) {
+		sharedCount.increment();
+		savedBytes.add(bytes);
+	}
+
+	private static long stringSize(String s) {
+		// char[] contents, padded to 8 bytes
+		return STRING_OVERHEAD + ((2L * s.length() + 7) & ~7L);
+	}
+
+	private class InterningParser extends JsonParserDelegate {
+
+		private InterningParser(JsonParser parser) {
+			super(parser);
+		}
+
+		// deserializers may read field names through any of these, and some Jackson
+		// versions' delegates pass nextFieldName straight to the wrapped parser
+		@Override
+		public String getCurrentName() throws IOException {
+			String name = super.getCurrentName();
+			return name != null ? name(name) : null;
+		}
+
+		@Override
+		public String nextFieldName() throws IOException {
+			return nextToken() == JsonToken.FIELD_NAME ? getCurrentName() : null;
+		}
+
+		@Override
+		public boolean nextFieldName(SerializableString name) throws IOException {
+			return nextToken() == JsonToken.FIELD_NAME && name.getValue().equals(getCurrentName());
+		}
+	}
+
+	private class InterningNodeFactory extends JsonNodeFactory {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public TextNode textNode(String text) {
+			return text != null ? text(text) : super.textNode(text);
+		}
+	}
+}
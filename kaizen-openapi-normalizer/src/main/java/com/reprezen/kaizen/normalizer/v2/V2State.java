@@ -3,8 +3,11 @@ package com.reprezen.kaizen.normalizer.v2;
 import static com.reprezen.kaizen.normalizer.ComponentUtil.makeNameRegex;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
 import java.util.regex.Pattern;
 
+import com.google.common.collect.ImmutableSet;
 import com.reprezen.kaizen.normalizer.Component;
 import com.reprezen.kaizen.normalizer.ComponentUtil;
 
@@ -31,6 +34,11 @@ public enum V2State implements Component {
 		SCHEMA_DEF.setDefiningSite(SCHEMA);
 		RESPONSE_DEF.setDefiningSite(RESPONSE);
 		PARAMETER_DEF.setDefiningSite(PARAMETER);
+
+		SCHEMA.setExampleFields("example");
+		SCHEMA_DEF.setExampleFields("example");
+		RESPONSE.setExampleFields("examples");
+		RESPONSE_DEF.setExampleFields("examples");
 	}
 
 	private boolean conformingSite = false;
@@ -38,6 +46,7 @@ public enum V2State implements Component {
 	private boolean definingSite = false;
 	private V2State definedComponent = null;
 	private String containerPath = null;
+	private Set<String> exampleFields = Collections.emptySet();
 
 	private V2State setConformingSite() {
 		this.conformingSite = true;
@@ -60,6 +69,11 @@ public enum V2State implements Component {
 		return this;
 	}
 
+	private V2State setExampleFields(String... fields) {
+		this.exampleFields = ImmutableSet.copyOf(fields);
+		return this;
+	}
+
 	private V2State setContainerPath() {
 		return setContainerPath("/" + util.lowerCamelName(this) + "s");
 	}
@@ -89,6 +103,11 @@ public enum V2State implements Component {
 		return containerPath;
 	}
 
+	@Override
+	public Set<String> getExampleFields() {
+		return exampleFields;
+	}
+
 	private static Pattern schemaNameRegex = makeNameRegex("definitions", "schemas");
 	private static Pattern responseNameRegex = makeNameRegex("responses", "responses");
 	private static Pattern parameterNameRegex = makeNameRegex("parameters", "parameters");
@@ -1,7 +1,10 @@
 package com.reprezen.kaizen.normalizer.v3;
 
 import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
 
+import com.google.common.collect.ImmutableSet;
 import com.reprezen.kaizen.normalizer.Component;
 import com.reprezen.kaizen.normalizer.ComponentUtil;
 
@@ -48,6 +51,17 @@ public enum V3State implements Component {
 		SECURITY_SCHEME_DEF.setDefiningSite(SECURITY_SCHEME);
 		LINK_DEF.setDefiningSite(LINK);
 		CALLBACK_DEF.setDefiningSite(CALLBACK);
+
+		SCHEMA.setExampleFields("example");
+		SCHEMA_DEF.setExampleFields("example");
+		PARAMETER.setExampleFields("example");
+		PARAMETER_DEF.setExampleFields("example");
+		HEADER.setExampleFields("example");
+		HEADER_DEF.setExampleFields("example");
+		MEDIA_TYPE.setExampleFields("example");
+		// example objects hold their payloads in `value`; other fields are kept
+		EXAMPLE.setExampleFields("value");
+		EXAMPLE_DEF.setExampleFields("value");
 	}
 
 	private boolean conformingSite = false;
@@ -55,6 +69,7 @@ public enum V3State implements Component {
 	private boolean definingSite = false;
 	private V3State definedComponent = null;
 	private String containerPath = null;
+	private Set<String> exampleFields = Collections.emptySet();
 
 	private V3State setConformingSite() {
 		this.conformingSite = true;
@@ -77,6 +92,11 @@ public enum V3State implements Component {
 		return this;
 	}
 
+	private V3State setExampleFields(String... fields) {
+		this.exampleFields = ImmutableSet.copyOf(fields);
+		return this;
+	}
+
 	private V3State setContainerPath() {
 		// use enum name when it yields correct value
 		return setContainerPath("/components/" + util.lowerCamelName(this) + "s");
@@ -107,6 +127,11 @@ public enum V3State implements Component {
 		return containerPath;
 	}
 
+	@Override
+	public Set<String> getExampleFields() {
+		return exampleFields;
+	}
+
 	@Override
 	public String getPreferredName(String path, URL url) {
 		// TODO Auto-generated method stub
@@ -0,0 +1,198 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.loader.ArchiveDocumentLoader;
+import com.reprezen.kaizen.normalizer.loader.ClasspathDocumentLoader;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class ArchiveDocumentLoaderTest extends NormalizerTestBase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path tempDir;
+	private Map<String, String> entries = new LinkedHashMap<>();
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = tempFolder.getRoot().toPath();
+		entries.put("api/model.yaml", "swagger: '2.0'\ndefinitions:\n  Pet:\n    $ref: 'common/pet.yaml'\n"
+				+ "  Error:\n    $ref: '../shared/error%20types.yaml#/Error'\n");
+		entries.put("api/common/pet.yaml", "type: object\nproperties:\n  name:\n    type: string\n");
+		entries.put("shared/error types.yaml", "Error:\n  type: object\n");
+	}
+
+	@Test
+	public void testZip() throws IOException {
+		checkArchive(writeZip(tempDir.resolve("bundle.zip")), false);
+	}
+
+	@Test
+	public void testTar() throws IOException {
+		checkArchive(writeTar(tempDir.resolve("bundle.tar")), false);
+	}
+
+	@Test
+	public void testTar_prefetch() throws IOException {
+		checkArchive(writeTar(tempDir.resolve("bundle.tar")), true);
+	}
+
+	@Test
+	public void testMissingEntry() throws IOException {
+		Path zip = writeZip(tempDir.resolve("bundle.zip"));
+		Content<V2State> missing = createContentManager(false)
+				.load(new Reference("jar:" + zip.toUri() + "!/api/missing.yaml"), V2State.MODEL);
+		assertFalse(missing.isValid());
+		assertTrue(missing.getInvalidReason().contains("No such archive entry"));
+	}
+
+	@Test
+	public void testClasspathJar() throws IOException {
+		Path jar = writeZip(tempDir.resolve("components.jar"));
+		ArchiveDocumentLoader archiveLoader = new ArchiveDocumentLoader(Long.MAX_VALUE,
+				ArchiveDocumentLoader.DEFAULT_MAX_CACHED_BYTES);
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, null)) {
+			DocumentLoaderRegistry loaders = DocumentLoaderRegistry.standard(null).register(
+					ClasspathDocumentLoader.SCHEME, new ClasspathDocumentLoader(classLoader, archiveLoader));
+			for (int i = 0; i < 2; i++) {
+				ContentManager<V2State> cm = new ContentManager<V2State>(Options.of(Option.DOCUMENT_LOADERS(loaders)),
+						new V2StateMachine());
+				Content<V2State> model = cm.load(new Reference("classpath:/api/model.yaml"), V2State.MODEL);
+				assertTrue(model.isValid());
+				Content<V2State> pet = cm.load(new Reference(model.at("/definitions/Pet/$ref").asText(),
+						model.getRef()), V2State.SCHEMA);
+				assertTrue(pet.isValid());
+				assertEquals("string", pet.at("/properties/name/type").asText());
+				// documents loaded again come from memory, without touching the jar
+				Files.deleteIfExists(jar);
+			}
+		}
+		assertEquals(2, archiveLoader.getCacheHitCount());
+	}
+
+	@Test
+	public void testChangedArchive() throws IOException {
+		Path zip = writeZip(tempDir.resolve("bundle.zip"));
+		ArchiveDocumentLoader archiveLoader = new ArchiveDocumentLoader(0,
+				ArchiveDocumentLoader.DEFAULT_MAX_CACHED_BYTES);
+		Options options = Options.of(Option.DOCUMENT_LOADERS(
+				DocumentLoaderRegistry.standard(null).register(ArchiveDocumentLoader.SCHEME, archiveLoader)));
+		Reference ref = new Reference("jar:" + zip.toUri() + "!/api/common/pet.yaml");
+		assertEquals("object",
+				new ContentManager<V2State>(options, new V2StateMachine()).load(ref, V2State.SCHEMA).at("/type")
+						.asText());
+		entries.put("api/common/pet.yaml", "type: string\n");
+		writeZip(zip);
+		Files.setLastModifiedTime(zip, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+		assertEquals("string",
+				new ContentManager<V2State>(options, new V2StateMachine()).load(ref, V2State.SCHEMA).at("/type")
+						.asText());
+		assertEquals(0, archiveLoader.getCacheHitCount());
+	}
+
+	@Test
+	public void testDefaultOptionsShareArchive() throws IOException {
+		Path zip = writeZip(tempDir.resolve("shared.zip"));
+		ArchiveDocumentLoader archiveLoader = DocumentLoaderRegistry.getStandardArchiveLoader();
+		long hits = archiveLoader.getCacheHitCount();
+		// each normalization has its own content manager and registry
+		checkArchive(zip, false);
+		checkArchive(zip, false);
+		assertEquals(hits + 3, archiveLoader.getCacheHitCount());
+	}
+
+	private void checkArchive(Path archive, boolean prefetch) {
+		ContentManager<V2State> cm = createContentManager(prefetch);
+		Content<V2State> model = cm.load(new Reference("jar:" + archive.toUri() + "!/api/model.yaml"),
+				V2State.MODEL);
+		assertTrue(model.isValid());
+		Content<V2State> pet = cm.load(new Reference(model.at("/definitions/Pet/$ref").asText(), model.getRef()),
+				V2State.SCHEMA);
+		assertTrue(pet.isValid());
+		assertEquals("string", pet.at("/properties/name/type").asText());
+		Content<V2State> error = cm.load(
+				new Reference(model.at("/definitions/Error/$ref").asText(), model.getRef()), V2State.SCHEMA);
+		assertTrue(error.isValid());
+		assertEquals("object", error.at("/type").asText());
+	}
+
+	private ContentManager<V2State> createContentManager(boolean prefetch) {
+		return new ContentManager<V2State>(prefetch ? Options.of(Option.PREFETCH) : new Options(),
+				new V2StateMachine());
+	}
+
+	private Path writeZip(Path path) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(path))) {
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey()));
+				out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		}
+		return path;
+	}
+
+	private Path writeTar(Path path) throws IOException {
+		try (OutputStream out = Files.newOutputStream(path)) {
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				byte[] content = entry.getValue().getBytes(StandardCharsets.UTF_8);
+				out.write(tarHeader(entry.getKey(), content.length));
+				out.write(content);
+				out.write(new byte[(512 - content.length % 512) % 512]);
+			}
+			out.write(new byte[1024]);
+		}
+		return path;
+	}
+
+	private byte[] tarHeader(String name, long size) {
+		byte[] header = new byte[512];
+		put(header, 0, name);
+		put(header, 100, "0000644");
+		put(header, 108, "0000000");
+		put(header, 116, "0000000");
+		put(header, 124, String.format("%011o", size));
+		put(header, 136, String.format("%011o", 0));
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		header[156] = '0';
+		put(header, 257, "ustar");
+		put(header, 263, "00");
+		int checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xFF;
+		}
+		put(header, 148, String.format("%06o", checksum));
+		header[154] = 0;
+		return header;
+	}
+
+	private void put(byte[] header, int offset, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(bytes, 0, header, offset, bytes.length);
+	}
+}
@@ -0,0 +1,118 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.ReferenceProcessor;
+import com.reprezen.kaizen.normalizer.util.CompactNode;
+import com.reprezen.kaizen.normalizer.util.CompactTreeBuilder;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class CompactTreeTest extends NormalizerTestBase {
+
+	private static final String[] MODELS = { "StateWalkV2", "StateWalkV3", "uber", "multifile-uber", "copyTest",
+			"LoadScanTest" };
+
+	private DocumentParser parser = new DocumentParser().withCompactTrees();
+	private ObjectMapper jsonMapper = new ObjectMapper();
+
+	@Test
+	public void testMatchesJackson() throws IOException {
+		for (String model : MODELS) {
+			JsonNode expected = loadYaml(model);
+			JsonNode compact;
+			try (InputStream in = getYamlFileUrl(model).openStream()) {
+				compact = parser.parse(in);
+			}
+			assertTrue(model, compact instanceof CompactNode);
+			assertEquals(model, expected, ((CompactNode) compact).materialize());
+			// equality is symmetric, so compact and Jackson containers are never equal
+			assertFalse(model, compact.equals(expected));
+			assertFalse(model, expected.equals(compact));
+			assertEquals(model, jsonMapper.writeValueAsString(expected), jsonMapper.writeValueAsString(compact));
+			JsonNode recompacted = new CompactTreeBuilder().compact(expected);
+			assertTrue(model, recompacted.equals(compact));
+			assertTrue(model, compact.equals(recompacted));
+			assertEquals(model, recompacted.hashCode(), compact.hashCode());
+		}
+	}
+
+	@Test
+	public void testLookups() throws IOException {
+		StringBuilder json = new StringBuilder("{");
+		for (int i = 0; i < 100; i++) {
+			json.append(String.format("\"field%d\": {\"value\": [%d, \"v%d\"]}, ", i, i, i));
+		}
+		json.append("\"field7\": \"replaced\"}");
+		JsonNode compact = parser.parse(new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+		assertEquals(100, compact.size());
+		for (int i = 0; i < 100; i++) {
+			if (i != 7) {
+				assertEquals(i, compact.at(String.format("/field%d/value/0", i)).intValue());
+				assertEquals("v" + i, compact.get("field" + i).path("value").path(1).asText());
+			}
+		}
+		assertEquals("replaced", compact.get("field7").asText());
+		assertEquals("field7", fieldNames(compact).get(7));
+		assertNull(compact.get("field100"));
+		assertTrue(compact.at("/field1/value/2").isMissingNode());
+		assertEquals(99, compact.findValues("value").size());
+		assertTrue(compact.deepCopy() == compact);
+	}
+
+	@Test
+	public void testProcess() {
+		JsonNode expected = new ReferenceProcessor<V2State>(new V2StateMachine(), Options.of(Option.INLINE_ALL))
+				.process(getYamlFileUrl("multifile-uber"));
+		JsonNode compact = new ReferenceProcessor<V2State>(new V2StateMachine(),
+				Options.of(Option.INLINE_ALL, Option.COMPACT_TREES)).process(getYamlFileUrl("multifile-uber"));
+		assertEquals(expected, compact);
+	}
+
+	@Test
+	public void testContent() {
+		ContentManager<V2State> cm = new ContentManager<V2State>(Options.of(Option.COMPACT_TREES),
+				new V2StateMachine());
+		Content<V2State> doc = cm.load(new Reference(getYamlFileUrl("StateWalkV2")), V2State.MODEL);
+		assertTrue(doc.at("/definitions") instanceof CompactNode);
+		JsonNode copy = doc.copyTree();
+		assertFalse(copy instanceof CompactNode);
+		assertEquals(copy, doc.getTree());
+		assertFalse(doc.getTree() instanceof CompactNode);
+		assertTrue(doc.getTree() == doc.getTree());
+	}
+
+	@Test
+	public void testSubtreeContent() {
+		ContentManager<V2State> cm = new ContentManager<V2State>(Options.of(Option.COMPACT_TREES),
+				new V2StateMachine());
+		Reference docRef = new Reference(getYamlFileUrl("StateWalkV2"));
+		Content<V2State> doc = cm.load(docRef, V2State.MODEL);
+		Content<V2State> schema = cm.load(new Reference("#/definitions/Product", docRef), V2State.SCHEMA_DEF);
+		assertTrue(schema.at("/properties") instanceof CompactNode);
+		// the document is materialized once, and shared with content drawn from it
+		assertTrue(schema.getTree() == doc.at("/definitions/Product"));
+		assertFalse(doc.at("") instanceof CompactNode);
+	}
+
+	private static List<String> fieldNames(JsonNode node) {
+		List<String> names = new ArrayList<>();
+		node.fieldNames().forEachRemaining(names::add);
+		return names;
+	}
+}
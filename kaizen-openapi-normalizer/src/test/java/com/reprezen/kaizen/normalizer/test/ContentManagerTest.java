@@ -7,9 +7,21 @@ import static com.reprezen.kaizen.normalizer.v2.V2State.RESPONSE;
 import static com.reprezen.kaizen.normalizer.v2.V2State.SCHEMA;
 import static com.reprezen.kaizen.normalizer.v2.V2State.SCHEMA_DEF;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -23,6 +35,9 @@ import com.reprezen.kaizen.normalizer.Option;
 import com.reprezen.kaizen.normalizer.Options;
 import com.reprezen.kaizen.normalizer.Reference;
 import com.reprezen.kaizen.normalizer.ReferenceScanner.ScanOp;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.loader.FileDocumentLoader;
+import com.reprezen.kaizen.normalizer.loader.InMemoryDocumentLoader;
 import com.reprezen.kaizen.normalizer.v2.V2State;
 import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
 
@@ -57,6 +72,21 @@ public class ContentManagerTest extends NormalizerTestBase {
 		assert (activities.getTree() == doc.at("/definitions/Activities"));
 	}
 
+	@Test
+	public void testPointerIndex() {
+		String pointer = "/definitions/Activities/properties/history";
+		JsonNode history = doc.at(pointer);
+		assertFalse(history.isMissingNode());
+		assertTrue(history == doc.at(pointer));
+		assertTrue(history == doc.at("/definitions/Activities").path("properties").path("history"));
+		assertTrue(doc.at("/definitions/Activities/xxx").isMissingNode());
+		assertTrue(doc.at("/xxx/yyy").isMissingNode());
+		assertTrue(doc.at("") == doc.getTree());
+		// a scan replaces the tree, and the nodes found in the old one are forgotten
+		doc.scan(ScanOp.LOAD);
+		assertTrue(doc.at(pointer) == doc.getTree().at(pointer));
+	}
+
 	@Test
 	public void testNotFound() {
 		Content<V2State> notFound = cm.load(new Reference("./xxx.yaml", doc.getRef(), MODEL), MODEL);
@@ -93,18 +123,21 @@ public class ContentManagerTest extends NormalizerTestBase {
 
 		JsonNode contactNode = model.at("/info/contact");
 		assertTrue(Reference.isRefNode(contactNode));
-		Reference ref = Reference.of(contactNode);
+		Reference ref = model.getReference(contactNode);
 		assertFalse(ref.isValid());
 
 		JsonNode param0Node = model.at("/paths/~1foo/get/parameters/0");
 		assertTrue(Reference.isRefNode(param0Node));
-		ref = Reference.of(param0Node);
+		ref = model.getReference(param0Node);
 		assertTrue(ref.isValid());
+		assertEquals(V2State.PARAMETER, ref.getComponent());
 
 		JsonNode schemaNode = model.at("/paths/~1foo/get/responses/200/schema");
 		assertTrue(Reference.isRefNode(schemaNode));
-		ref = Reference.of(schemaNode);
+		ref = model.getReference(schemaNode);
 		assertTrue(ref.isValid());
+		// references are kept beside the tree, not in it
+		assertEquals(1, schemaNode.size());
 	}
 
 	@Test
@@ -146,6 +179,226 @@ public class ContentManagerTest extends NormalizerTestBase {
 		checkDefinitions(V2State.RESPONSE, "ErrorResponse");
 	}
 
+	@Test
+	public void testPolicyPhase_prefetch() {
+		cm = new ContentManager<V2State>(Options.of(Option.INLINE_NONE, Option.PREFETCH(2)), new V2StateMachine());
+		Content<V2State> model = cm.load(new Reference("multifile-uber.yaml", doc.getRef(), V2State.MODEL),
+				V2State.MODEL);
+		model.scan(ScanOp.LOAD);
+		model.scan(ScanOp.COMPONENTS);
+		model.scan(ScanOp.POLICY);
+		checkDefinitions(V2State.PATH, "/products", "/estimates/price", "/estimates/time", "/me", "/history");
+		checkDefinitions(V2State.SCHEMA, "PriceEstimate", "Profile", "Activity", "Activities", "Product", "Error");
+		checkDefinitions(V2State.PARAMETER, "latitude", "longitude", "start_latitude", "start_longitude",
+				"end_latitude", "end_longitude", "customer_uuid", "product_id", "offset", "limit");
+		checkDefinitions(V2State.RESPONSE, "ErrorResponse");
+	}
+
+	@Test
+	public void testPolicyPhase_releaseResolved() {
+		ContentManager<V2State> unbounded = new ContentManager<V2State>(Options.of(Option.INLINE_NONE),
+				new V2StateMachine());
+		Content<V2State> expected = unbounded.load(new Reference("multifile-uber.yaml", doc.getRef(), MODEL), MODEL);
+		expected.scan(ScanOp.LOAD);
+		expected.scan(ScanOp.COMPONENTS);
+		expected.scan(ScanOp.POLICY);
+
+		cm = new ContentManager<V2State>(Options.of(Option.INLINE_NONE, Option.RELEASE_RESOLVED_DOCUMENTS),
+				new V2StateMachine());
+		Content<V2State> model = cm.load(new Reference("multifile-uber.yaml", doc.getRef(), V2State.MODEL),
+				V2State.MODEL);
+		model.scan(ScanOp.LOAD);
+		model.scan(ScanOp.COMPONENTS);
+		model.scan(ScanOp.POLICY);
+		assertTrue(cm.getReleasedCount() > 0);
+		assertEquals(expected.getTree(), model.getTree());
+		// the top-level model was never released
+		assertTrue(model == cm.load(model.getRef(), V2State.MODEL));
+		checkDefinitions(V2State.PATH, "/products", "/estimates/price", "/estimates/time", "/me", "/history");
+		checkDefinitions(V2State.SCHEMA, "PriceEstimate", "Profile", "Activity", "Activities", "Product", "Error");
+		checkDefinitions(V2State.PARAMETER, "latitude", "longitude", "start_latitude", "start_longitude",
+				"end_latitude", "end_longitude", "customer_uuid", "product_id", "offset", "limit");
+		checkDefinitions(V2State.RESPONSE, "ErrorResponse");
+	}
+
+	@Test
+	public void testReleaseResolved_parsedOnce() {
+		checkParsedOnce(Option.INLINE_NONE);
+		checkParsedOnce(Option.INLINE_ALL);
+	}
+
+	private void checkParsedOnce(Option inlining) {
+		AtomicInteger defsLoads = new AtomicInteger();
+		byte[] defs = ("Pet:\n  type: object\nOwner:\n  type: object\n  properties:\n    pet:\n"
+				+ "      $ref: '#/Pet'\nVet:\n  type: string\n").getBytes(StandardCharsets.UTF_8);
+		InMemoryDocumentLoader documents = new InMemoryDocumentLoader() //
+				.put("mem:/api/model.yaml", "swagger: '2.0'\ndefinitions:\n  Pet:\n    $ref: 'defs.yaml#/Pet'\n"
+						+ "  Owner:\n    $ref: 'defs.yaml#/Owner'\n  Vet:\n    $ref: 'defs.yaml#/Vet'\n"
+						+ "  Pets:\n    type: array\n    items:\n      $ref: 'defs.yaml#/Pet'\n") //
+				.put("mem:/api/defs.yaml", () -> {
+					defsLoads.incrementAndGet();
+					return ByteBuffer.wrap(defs);
+				});
+		cm = new ContentManager<V2State>(Options.of(inlining, Option.RELEASE_RESOLVED_DOCUMENTS,
+				Option.IN_MEMORY_DOCUMENTS(documents)), new V2StateMachine());
+		Content<V2State> model = cm.load(new Reference("mem:/api/model.yaml"), MODEL);
+		model.scan(ScanOp.LOAD);
+		model.scan(ScanOp.COMPONENTS);
+		model.scan(ScanOp.POLICY);
+		assertEquals(inlining.toString(), 1, defsLoads.get());
+		// dropped once its last reference was resolved
+		assertEquals(inlining.toString(), 1, cm.getReleasedCount());
+	}
+
+	@Test
+	public void testLoadAsync() {
+		AtomicInteger fileLoads = new AtomicInteger();
+		FileDocumentLoader fileLoader = new FileDocumentLoader();
+		DocumentLoaderRegistry loaders = DocumentLoaderRegistry.standard(null).register("file", (url, parser) -> {
+			fileLoads.incrementAndGet();
+			return fileLoader.load(url, parser);
+		});
+		cm = new ContentManager<V2State>(Options.of(Option.DOCUMENT_LOADERS(loaders)), new V2StateMachine());
+		Reference modelRef = new Reference("uber.yaml", doc.getRef(), MODEL);
+		List<CompletableFuture<Content<V2State>>> futures = Arrays.asList( //
+				cm.loadAsync(new Reference("#/definitions/Product", modelRef, SCHEMA_DEF),
+						cm.getMachine().getState(SCHEMA_DEF)),
+				cm.loadAsync(new Reference("#/definitions/PriceEstimate", modelRef, SCHEMA_DEF),
+						cm.getMachine().getState(SCHEMA_DEF)),
+				cm.loadAsync(modelRef, cm.getMachine().getState(MODEL)));
+		Content<V2State> model = futures.get(2).join();
+		assertTrue(model.isValid());
+		assertEquals("object", futures.get(0).join().at("/type").asText());
+		assertTrue(futures.get(1).join().getTree() == model.at("/definitions/PriceEstimate"));
+		assertEquals(1, fileLoads.get());
+		assertTrue(model == cm.loadAsync(modelRef, cm.getMachine().getState(MODEL)).join());
+	}
+
+	@Test
+	public void testLoadAsync_singleFetch() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loadStarted = new CountDownLatch(1);
+		CountDownLatch finishLoad = new CountDownLatch(1);
+		InMemoryDocumentLoader documents = new InMemoryDocumentLoader().put("mem:/api/model.yaml", () -> {
+			loads.incrementAndGet();
+			loadStarted.countDown();
+			try {
+				finishLoad.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return ByteBuffer.wrap("swagger: '2.0'\n".getBytes(StandardCharsets.UTF_8));
+		});
+		cm = new ContentManager<V2State>(Options.of(Option.IN_MEMORY_DOCUMENTS(documents)), new V2StateMachine());
+		Reference ref = new Reference("mem:/api/model.yaml");
+		// a synchronous load is underway...
+		CompletableFuture<Content<V2State>> loaded = CompletableFuture.supplyAsync(() -> cm.load(ref, MODEL));
+		assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+		// ...so an asynchronous one waits for it
+		CompletableFuture<Content<V2State>> first = cm.loadAsync(ref, cm.getMachine().getState(MODEL));
+		finishLoad.countDown();
+		// and so does every load until the document's content exists, including
+		// those made after the fetch has completed
+		while (!first.isDone()) {
+			cm.loadAsync(ref, cm.getMachine().getState(MODEL));
+		}
+		assertTrue(first.join().isValid());
+		assertTrue(first.join() == loaded.join());
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testLoadAsync_raced() {
+		for (int i = 0; i < 100; i++) {
+			AtomicInteger loads = new AtomicInteger();
+			InMemoryDocumentLoader documents = new InMemoryDocumentLoader().put("mem:/api/model.yaml", () -> {
+				loads.incrementAndGet();
+				return ByteBuffer.wrap("swagger: '2.0'\n".getBytes(StandardCharsets.UTF_8));
+			});
+			cm = new ContentManager<V2State>(Options.of(Option.IN_MEMORY_DOCUMENTS(documents)),
+					new V2StateMachine());
+			Reference ref = new Reference("mem:/api/model.yaml");
+			CompletableFuture<Content<V2State>> first = cm.loadAsync(ref, cm.getMachine().getState(MODEL));
+			// these race the creation of the document's content, once the fetch completes
+			while (!first.isDone()) {
+				cm.loadAsync(ref, cm.getMachine().getState(MODEL));
+			}
+			assertTrue(first.join().isValid());
+			assertEquals(1, loads.get());
+		}
+	}
+
+	@Test
+	public void testLoadAsync_notFound() {
+		Content<V2State> notFound = cm.loadAsync(new Reference("./xxx.yaml", doc.getRef(), MODEL),
+				cm.getMachine().getState(MODEL)).join();
+		assertFalse(notFound.isValid());
+		assertTrue(notFound.getInvalidReason().toLowerCase().contains("no such file"));
+	}
+
+	@Test
+	public void testNotFound_prefetch() {
+		cm = new ContentManager<V2State>(Options.of(Option.PREFETCH), new V2StateMachine());
+		Content<V2State> model = cm.load(new Reference("LoadScanTest.yaml", doc.getRef(), MODEL), MODEL);
+		model.scan(ScanOp.LOAD);
+		assertFalse(model.getReference(model.at("/info/contact")).isValid());
+		Content<V2State> notFound = cm.load(new Reference("./xxx.yaml", doc.getRef(), MODEL), MODEL);
+		assertFalse(notFound.isValid());
+		assertTrue(notFound.getInvalidReason().toLowerCase().contains("no such file"));
+	}
+
+	@Test
+	public void testPrefetchDuringParse() {
+		CountDownLatch referencedLoadStarted = new CountDownLatch(1);
+		// long enough that sniffing the document's format doesn't reach its end
+		byte[] model = String.format("swagger: '2.0'\ndefinitions:\n  Pet:\n    $ref: 'pet.yaml'\n"
+				+ "info:\n  description: %0300d\n", 0).getBytes(StandardCharsets.UTF_8);
+		DocumentLoaderRegistry loaders = new DocumentLoaderRegistry().register("sniff", (url, parser) -> {
+			if (url.getPath().endsWith("pet.yaml")) {
+				referencedLoadStarted.countDown();
+				return parser.parse(new ByteArrayInputStream("type: object\n".getBytes(StandardCharsets.UTF_8)));
+			}
+			// the model's stream doesn't end until the referenced document is requested,
+			// so the parse can complete only if the reference was spotted along the way
+			return parser.parse(new SequenceInputStream(new ByteArrayInputStream(model), new InputStream() {
+				@Override
+				public int read() throws IOException {
+					try {
+						if (!referencedLoadStarted.await(10, TimeUnit.SECONDS)) {
+							throw new IOException("Referenced document was not prefetched during parse");
+						}
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException();
+					}
+					return -1;
+				}
+			}));
+		});
+		cm = new ContentManager<V2State>(Options.of(Option.PREFETCH(2), Option.DOCUMENT_LOADERS(loaders)),
+				new V2StateMachine());
+		Content<V2State> content = cm.load(new Reference("sniff:/api/model.yaml"), MODEL);
+		assertTrue(content.getInvalidReason(), content.isValid());
+		assertEquals("object", cm.load(new Reference("pet.yaml", content.getRef()), SCHEMA).at("/type").asText());
+	}
+
+	@Test
+	public void testDiscardPrefetched() {
+		InMemoryDocumentLoader documents = new InMemoryDocumentLoader() //
+				.put("mem:/api/model.yaml", "swagger: '2.0'\ndefinitions:\n  Pet:\n    $ref: 'pet.yaml'\n"
+						+ "info:\n  description: |\n    Use $ref: unused.yaml\n") //
+				.put("mem:/api/pet.yaml", "type: object\n") //
+				.put("mem:/api/unused.yaml", "type: string\n");
+		cm = new ContentManager<V2State>(Options.of(Option.PREFETCH(2), Option.IN_MEMORY_DOCUMENTS(documents)),
+				new V2StateMachine());
+		Content<V2State> model = cm.load(new Reference("mem:/api/model.yaml"), MODEL);
+		model.scan(ScanOp.LOAD);
+		model.scan(ScanOp.COMPONENTS);
+		model.scan(ScanOp.POLICY);
+		// the reference spotted in the description is never resolved, so its prefetch is left
+		assertEquals(1, cm.discardPrefetched());
+		assertEquals(0, cm.discardPrefetched());
+	}
+
 	private void checkDefinitions(Component component, String... names) {
 		Set<String> expected = new HashSet<>(Arrays.asList(names));
 		Iterable<LocalizedContent> localized = cm.getLocalizedContent(component);
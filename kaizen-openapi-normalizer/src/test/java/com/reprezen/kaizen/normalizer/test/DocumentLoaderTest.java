@@ -0,0 +1,139 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.loader.ClasspathDocumentLoader;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoader;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.loader.InMemoryDocumentLoader;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class DocumentLoaderTest extends NormalizerTestBase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private InMemoryDocumentLoader memLoader;
+	private DocumentLoaderRegistry loaders;
+
+	@Before
+	public void setup() {
+		this.memLoader = new InMemoryDocumentLoader() //
+				.put("mem:/api/main.yaml", "swagger: '2.0'\ndefinitions:\n  Pet:\n    $ref: 'common/pet.yaml'\n") //
+				.put("mem:/api/common/pet.yaml", "type: object\nproperties:\n  name:\n    type: string\n");
+		this.loaders = DocumentLoaderRegistry.standard(null).register(InMemoryDocumentLoader.SCHEME, memLoader);
+	}
+
+	@After
+	public void teardown() {
+		// custom schemes are usable process-wide until unregistered
+		loaders.unregister("custom");
+	}
+
+	@Test
+	public void testInMemory() {
+		ContentManager<V2State> cm = createContentManager();
+		Content<V2State> main = cm.load(new Reference("mem:/api/main.yaml"), V2State.MODEL);
+		assertTrue(main.isValid());
+		Reference petRef = new Reference(main.at("/definitions/Pet/$ref").asText(), main.getRef());
+		assertEquals("mem:/api/common/pet.yaml", petRef.getUrlString());
+		Content<V2State> pet = cm.load(petRef, V2State.SCHEMA);
+		assertTrue(pet.isValid());
+		assertEquals("string", pet.at("/properties/name/type").asText());
+	}
+
+	@Test
+	public void testInMemoryNotFound() {
+		Content<V2State> missing = createContentManager().load(new Reference("mem:/api/missing.yaml"),
+				V2State.MODEL);
+		assertFalse(missing.isValid());
+		assertTrue(missing.getInvalidReason().contains("No such document"));
+	}
+
+	@Test
+	public void testClasspath() throws IOException {
+		Content<V2State> doc = createContentManager().load(new Reference("classpath:/models/StateWalkV2.yaml"),
+				V2State.MODEL);
+		assertTrue(doc.isValid());
+		assertEquals(loadYaml("StateWalkV2"), doc.getTree());
+	}
+
+	@Test
+	public void testClasspath_defaultOptions() throws IOException {
+		// each normalization gets its own standard registry, but they share the
+		// classpath loader and its located resources
+		assertSame(new Options().getDocumentLoaders().getLoader(ClasspathDocumentLoader.SCHEME),
+				new Options().getDocumentLoaders().getLoader(ClasspathDocumentLoader.SCHEME));
+		for (int i = 0; i < 2; i++) {
+			Content<V2State> doc = new ContentManager<V2State>(new Options(), new V2StateMachine())
+					.load(new Reference("classpath:/models/StateWalkV2.yaml"), V2State.MODEL);
+			assertTrue(doc.isValid());
+			assertEquals(loadYaml("StateWalkV2"), doc.getTree());
+		}
+	}
+
+	@Test
+	public void testCustomScheme() {
+		AtomicInteger loads = new AtomicInteger();
+		loaders.register("custom", new DocumentLoader() {
+			@Override
+			public JsonNode load(URL url, DocumentParser parser) throws IOException {
+				loads.incrementAndGet();
+				return memLoader.load(new Reference("mem:" + url.getPath()).getUrl(), parser);
+			}
+		});
+		Content<V2State> doc = createContentManager().load(new Reference("custom:/api/main.yaml"), V2State.MODEL);
+		assertTrue(doc.isValid());
+		assertEquals(1, loads.get());
+		assertEquals("2.0", doc.at("/swagger").asText());
+		loaders.unregister("custom");
+		assertFalse(new Reference("custom:/api/main.yaml").isValid());
+	}
+
+	@Test
+	public void testGzipFallback() throws IOException {
+		Path tempDir = tempFolder.getRoot().toPath();
+		Path model = tempDir.resolve("model.yaml");
+		Files.write(model, "swagger: '2.0'\ndefinitions:\n  Pet:\n    $ref: 'pet.yaml'\n".getBytes(StandardCharsets.UTF_8));
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempDir.resolve("pet.yaml.gz")))) {
+			out.write("type: object\n".getBytes(StandardCharsets.UTF_8));
+		}
+		ContentManager<V2State> cm = createContentManager();
+		Content<V2State> doc = cm.load(new Reference(model.toUri().toURL()), V2State.MODEL);
+		Content<V2State> pet = cm.load(new Reference(doc.at("/definitions/Pet/$ref").asText(), doc.getRef()),
+				V2State.SCHEMA);
+		assertTrue(pet.isValid());
+		assertEquals(tempDir.resolve("pet.yaml").toUri().toURL().toString(), pet.getRef().getUrlString());
+		assertEquals("object", pet.at("/type").asText());
+	}
+
+	@Test
+	public void testUnknownScheme() {
+		assertFalse(new Reference("unregistered:/api/main.yaml").isValid());
+	}
+
+	private ContentManager<V2State> createContentManager() {
+		return new ContentManager<V2State>(Options.of(Option.DOCUMENT_LOADERS(loaders)), new V2StateMachine());
+	}
+}
@@ -0,0 +1,155 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.util.ByteBufferInputStream;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+import com.reprezen.kaizen.normalizer.util.DocumentParser.Compression;
+import com.reprezen.kaizen.normalizer.util.DocumentParser.Format;
+import com.reprezen.kaizen.normalizer.util.DocumentParser.Sniff;
+
+public class DocumentParserTest extends NormalizerTestBase {
+
+	private static final String JSON = "  \n{\"swagger\": \"2.0\", \"info\": {\"title\": \"Café\"}}";
+	private static final String YAML = "swagger: '2.0'\ninfo:\n  title: Café\n";
+
+	private DocumentParser parser = new DocumentParser();
+
+	@Test
+	public void testSniffJson() {
+		checkSniff(JSON, StandardCharsets.UTF_8, false, Format.JSON);
+		checkSniff(JSON, StandardCharsets.UTF_16LE, false, Format.JSON);
+		checkSniff(JSON, StandardCharsets.UTF_16BE, true, Format.JSON);
+	}
+
+	@Test
+	public void testSniffYaml() {
+		checkSniff(YAML, StandardCharsets.UTF_8, false, Format.YAML);
+		checkSniff(YAML, StandardCharsets.UTF_8, true, Format.YAML);
+		checkSniff(YAML, StandardCharsets.UTF_16BE, false, Format.YAML);
+		checkSniff(YAML, StandardCharsets.UTF_16LE, true, Format.YAML);
+		checkSniff("", StandardCharsets.UTF_8, false, Format.YAML);
+	}
+
+	@Test
+	public void testParse() throws IOException {
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16LE,
+				StandardCharsets.UTF_16BE }) {
+			for (boolean bom : new boolean[] { false, true }) {
+				checkParse(JSON, charset, bom);
+				checkParse(YAML, charset, bom);
+			}
+		}
+	}
+
+	@Test
+	public void testStreamLeftOpen() throws IOException {
+		ClosingTracker in = new ClosingTracker(encode(YAML, StandardCharsets.UTF_8, false));
+		parser.parse(in);
+		assertFalse(in.closed);
+	}
+
+	@Test
+	public void testParseModel() throws IOException {
+		try (InputStream in = getYamlFileUrl("StateWalkV2").openStream()) {
+			assertEquals(loadYaml("StateWalkV2"), parser.parse(in));
+		}
+	}
+
+	@Test
+	public void testParseFromBuffer() throws IOException {
+		byte[] bytes = encode(YAML, StandardCharsets.UTF_8, true);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 10);
+		buffer.position(10);
+		buffer.put(bytes);
+		buffer.position(10);
+		JsonNode tree = parser.parse(new ByteBufferInputStream(buffer));
+		assertEquals("Café", tree.path("info").path("title").asText());
+		// the provided buffer is not disturbed
+		assertEquals(10, buffer.position());
+	}
+
+	@Test
+	public void testParseGzip() throws IOException {
+		for (String text : new String[] { JSON, YAML }) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+				out.write(encode(text, StandardCharsets.UTF_16LE, true));
+			}
+			JsonNode tree = parser.parse(new ByteArrayInputStream(compressed.toByteArray()));
+			assertEquals("Café", tree.path("info").path("title").asText());
+		}
+	}
+
+	@Test
+	public void testRejectZstd() {
+		byte[] bytes = { 0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 0, 0, 0, 0 };
+		assertEquals(Compression.ZSTD, DocumentParser.getCompression(bytes, bytes.length));
+		try {
+			parser.parse(new ByteArrayInputStream(bytes));
+			fail("Zstandard content should be rejected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Zstandard"));
+		}
+	}
+
+	@Test
+	public void testReferenceListener() throws IOException {
+		List<String> refs = new ArrayList<>();
+		DocumentParser sniffing = parser.withReferenceListener(refs::add);
+		String yaml = "swagger: '2.0'\ndefinitions:\n  A:\n    $ref: common.yaml#/A\n  B:\n    $ref: \"b.yaml\"\n"
+				+ "  C:\n    $ref: '#/definitions/A'\n  D: {$ref: d.yaml, title: D}\n  E:\n    $ref: e.yaml";
+		JsonNode tree = sniffing.parse(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+		assertEquals("d.yaml", tree.at("/definitions/D/$ref").asText());
+		assertEquals(Arrays.asList("common.yaml#/A", "b.yaml", "d.yaml", "e.yaml"), refs);
+		refs.clear();
+		String json = "{\"a\": {\"$ref\": \"a.json\"}, \"b\": {\"$ref\" : \"#/a\"}, \"c\": [{\"$ref\":\"c.json#/x\"}]}";
+		sniffing.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(Arrays.asList("a.json", "c.json#/x"), refs);
+	}
+
+	private void checkSniff(String text, Charset charset, boolean bom, Format format) {
+		byte[] bytes = encode(text, charset, bom);
+		Sniff sniff = DocumentParser.sniff(bytes, bytes.length);
+		assertEquals(format, sniff.getFormat());
+		assertEquals(charset, sniff.getCharset());
+		assertEquals(bom ? (charset == StandardCharsets.UTF_8 ? 3 : 2) : 0, sniff.getBomLength());
+	}
+
+	private void checkParse(String text, Charset charset, boolean bom) throws IOException {
+		JsonNode tree = parser.parse(new ByteArrayInputStream(encode(text, charset, bom)));
+		assertEquals("2.0", tree.path("swagger").asText());
+		assertEquals("Café", tree.path("info").path("title").asText());
+	}
+
+	private byte[] encode(String text, Charset charset, boolean bom) {
+		return ((bom ? "\uFEFF" : "") + text).getBytes(charset);
+	}
+
+	private static class ClosingTracker extends ByteArrayInputStream {
+		private boolean closed = false;
+
+		public ClosingTracker(byte[] buf) {
+			super(buf);
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			super.close();
+		}
+	}
+}
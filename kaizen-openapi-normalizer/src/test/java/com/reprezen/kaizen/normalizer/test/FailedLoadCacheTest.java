@@ -0,0 +1,81 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.FailedLoadCache;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class FailedLoadCacheTest extends NormalizerTestBase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private AtomicInteger attempts = new AtomicInteger();
+	private DocumentLoaderRegistry loaders;
+
+	@Before
+	public void setup() {
+		this.loaders = DocumentLoaderRegistry.standard(null).register("broken", (url, parser) -> {
+			attempts.incrementAndGet();
+			throw new SocketTimeoutException("Read timed out");
+		});
+	}
+
+	@Test
+	public void testRepeatedFailure() {
+		FailedLoadCache cache = new FailedLoadCache(60000);
+		Content<V2State> first = load("broken:/api/model.yaml", cache);
+		Content<V2State> second = load("broken:/api/model.yaml", cache);
+		assertFalse(second.isValid());
+		assertEquals(first.getInvalidReason(), second.getInvalidReason());
+		assertTrue(second.getInvalidReason().contains("Read timed out"));
+		assertEquals(1, attempts.get());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		FailedLoadCache cache = new FailedLoadCache(20);
+		load("broken:/api/model.yaml", cache);
+		Thread.sleep(50);
+		load("broken:/api/model.yaml", cache);
+		assertEquals(2, attempts.get());
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void testMissingFileAppears() throws IOException {
+		FailedLoadCache cache = new FailedLoadCache(60000);
+		Path model = tempFolder.getRoot().toPath().resolve("model.yaml");
+		String url = model.toUri().toString();
+		Content<V2State> missing = load(url, cache);
+		assertFalse(missing.isValid());
+		assertTrue(missing.getInvalidReason().contains(FileNotFoundException.class.getName()));
+		Files.write(model, "swagger: '2.0'\n".getBytes(StandardCharsets.UTF_8));
+		assertTrue(load(url, cache).isValid());
+		assertEquals(0, cache.getHitCount());
+	}
+
+	private Content<V2State> load(String url, FailedLoadCache cache) {
+		Options options = Options.of(Option.FAILED_LOAD_CACHE(cache), Option.DOCUMENT_LOADERS(loaders));
+		return new ContentManager<V2State>(options, new V2StateMachine()).load(new Reference(url), V2State.MODEL);
+	}
+}
@@ -0,0 +1,84 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.loader.FileDocumentLoader;
+import com.reprezen.kaizen.normalizer.util.ByteBufferInputStream;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+
+public class FileDocumentLoaderTest extends NormalizerTestBase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private FileDocumentLoader loader = new FileDocumentLoader();
+	private RecordingParser parser = new RecordingParser();
+
+	@Test
+	public void testMapped() throws IOException {
+		JsonNode tree = loader.load(getYamlFileUrl("StateWalkV2"), parser);
+		assertEquals(loadYaml("StateWalkV2"), tree);
+		assertEquals(1, parser.streams.size());
+		assertTrue(parser.streams.get(0) instanceof ByteBufferInputStream);
+	}
+
+	@Test
+	public void testDirectoryNotMapped() throws IOException {
+		File dir = tempFolder.newFolder("models");
+		Files.write(dir.toPath().resolve("model.yaml"), "swagger: '2.0'\n".getBytes(StandardCharsets.UTF_8));
+		// a directory reads as a listing through its URL stream
+		loader.load(dir.toURI().toURL(), parser);
+		assertEquals(1, parser.streams.size());
+		assertFalse(parser.streams.get(0) instanceof ByteBufferInputStream);
+	}
+
+	@Test
+	public void testMissingNotMapped() throws IOException {
+		URL url = new File(tempFolder.getRoot(), "missing.yaml").toURI().toURL();
+		try {
+			loader.load(url, parser);
+			fail("Loaded a missing file");
+		} catch (FileNotFoundException e) {
+			assertTrue(parser.streams.isEmpty());
+		}
+	}
+
+	@Test
+	public void testUnreadableNotMapped() throws IOException {
+		File file = tempFolder.newFile("secret.yaml");
+		Files.write(file.toPath(), "swagger: '2.0'\n".getBytes(StandardCharsets.UTF_8));
+		if (!file.setReadable(false) || file.canRead()) {
+			// permissions aren't enforced for this user, e.g. root
+			return;
+		}
+		try {
+			loader.load(file.toURI().toURL(), parser);
+			fail("Loaded an unreadable file");
+		} catch (IOException e) {
+			assertTrue(parser.streams.isEmpty());
+		}
+	}
+
+	private static class RecordingParser extends DocumentParser {
+		private List<InputStream> streams = new ArrayList<>();
+
+		@Override
+		public JsonNode parse(InputStream in) throws IOException {
+			streams.add(in);
+			return super.parse(in);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.loader.HttpCache;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+@SuppressWarnings("restriction")
+public class HttpCacheTest extends NormalizerTestBase {
+
+	private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private HttpCache cache;
+	private HttpServer server;
+	private ExecutorService executor = Executors.newCachedThreadPool();
+	private String url;
+	private volatile String etag = "\"v1\"";
+	private volatile String title = "First";
+	private AtomicInteger fullResponses = new AtomicInteger();
+	private AtomicInteger notModifiedResponses = new AtomicInteger();
+
+	@Before
+	public void setup() throws IOException {
+		cache = new HttpCache(tempFolder.getRoot().toPath());
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+		url = String.format("http://localhost:%d/model.yaml", server.getAddress().getPort());
+	}
+
+	@After
+	public void teardown() throws IOException {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testRevalidation() {
+		assertEquals("First", load().at("/info/title").asText());
+		assertEquals(1, fullResponses.get());
+		assertEquals(1, cache.getMissCount());
+		// a later normalization only revalidates
+		assertEquals("First", load().at("/info/title").asText());
+		assertEquals(1, fullResponses.get());
+		assertEquals(1, notModifiedResponses.get());
+		assertEquals(1, cache.getRevalidatedCount());
+	}
+
+	@Test
+	public void testChangedDocument() {
+		load();
+		etag = "\"v2\"";
+		title = "Second";
+		assertEquals("Second", load().at("/info/title").asText());
+		assertEquals(2, fullResponses.get());
+		assertEquals(0, notModifiedResponses.get());
+		assertEquals("Second", load().at("/info/title").asText());
+		assertEquals(1, notModifiedResponses.get());
+	}
+
+	@Test
+	public void testLastModifiedOnly() {
+		etag = null;
+		load();
+		assertEquals("First", load().at("/info/title").asText());
+		assertEquals(1, fullResponses.get());
+		assertEquals(1, notModifiedResponses.get());
+	}
+
+	@Test
+	public void testReplacedEntry() throws IOException {
+		URL docUrl = new URL(url);
+		DocumentParser parser = new DocumentParser();
+		byte[] body = "title: First\n".getBytes(StandardCharsets.UTF_8);
+		cache.put(docUrl, "\"v1\"", null, body, parser.parse(new ByteArrayInputStream(body)));
+		HttpCache.Entry entry = cache.get(docUrl);
+		assertEquals("\"v1\"", entry.getEtag());
+		assertNull(entry.getLastModified());
+		body = "title: Second\n".getBytes(StandardCharsets.UTF_8);
+		cache.put(docUrl, "\"v2\"", null, body, parser.parse(new ByteArrayInputStream(body)));
+		// the validators already sent no longer match the entry
+		assertNull(entry.readTree(parser));
+		assertEquals("Second", cache.get(docUrl).readTree(parser).at("/title").asText());
+	}
+
+	private Content<V2State> load() {
+		ContentManager<V2State> cm = new ContentManager<V2State>(Options.of(Option.HTTP_CACHE(cache)),
+				new V2StateMachine());
+		Content<V2State> content = cm.load(new Reference(url), V2State.MODEL);
+		assertTrue(content.isValid());
+		return content;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String currentEtag = etag;
+			String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			boolean notModified = currentEtag != null ? currentEtag.equals(ifNoneMatch)
+					: LAST_MODIFIED.equals(ifModifiedSince);
+			if (currentEtag != null) {
+				exchange.getResponseHeaders().set("ETag", currentEtag);
+			}
+			exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+			if (notModified) {
+				notModifiedResponses.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				fullResponses.incrementAndGet();
+				byte[] body = String.format("swagger: '2.0'\ninfo:\n  title: %s\n", title)
+						.getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.loader.HttpDocumentLoader;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+@SuppressWarnings("restriction")
+public class HttpDocumentLoaderTest extends NormalizerTestBase {
+
+	private static final int FRAGMENT_COUNT = 20;
+	private static final int MAX_PER_HOST = 2;
+
+	private HttpServer server;
+	private ExecutorService executor = Executors.newCachedThreadPool();
+	private String baseUrl;
+	private Map<String, String> documents = new HashMap<>();
+	private Map<String, String> redirects = new HashMap<>();
+	private Map<String, Integer> statuses = new HashMap<>();
+	private Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+	private AtomicInteger inFlight = new AtomicInteger();
+	private AtomicInteger maxInFlight = new AtomicInteger();
+	private AtomicInteger requests = new AtomicInteger();
+
+	@Before
+	public void setup() throws IOException {
+		StringBuilder model = new StringBuilder("swagger: '2.0'\ndefinitions:\n");
+		for (int i = 0; i < FRAGMENT_COUNT; i++) {
+			model.append(String.format("  Type%d:\n    $ref: 'types/type%d.yaml'\n", i, i));
+			documents.put(String.format("/api/types/type%d.yaml", i), String.format("title: Type %d\n", i));
+		}
+		documents.put("/api/model.yaml", model.toString());
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+		baseUrl = String.format("http://localhost:%d/api/", server.getAddress().getPort());
+	}
+
+	@After
+	public void teardown() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConnectionReuse() {
+		ContentManager<V2State> cm = createContentManager(Option.PREFETCH(8));
+		Content<V2State> model = cm.load(new Reference(baseUrl + "model.yaml"), V2State.MODEL);
+		assertTrue(model.isValid());
+		for (int i = 0; i < FRAGMENT_COUNT; i++) {
+			Content<V2State> type = cm.load(new Reference(String.format("types/type%d.yaml", i), model.getRef()),
+					V2State.SCHEMA);
+			assertTrue(type.isValid());
+			assertEquals("Type " + i, type.at("/title").asText());
+		}
+		assertEquals(FRAGMENT_COUNT + 1, requests.get());
+		assertTrue(maxInFlight.get() <= MAX_PER_HOST);
+		assertTrue(String.format("%d connections used", clientPorts.size()), clientPorts.size() <= MAX_PER_HOST);
+	}
+
+	@Test
+	public void testNotFound() {
+		ContentManager<V2State> cm = createContentManager();
+		Content<V2State> missing = cm.load(new Reference(baseUrl + "missing.yaml"), V2State.MODEL);
+		assertFalse(missing.isValid());
+		assertTrue(missing.getInvalidReason().contains("FileNotFoundException"));
+		assertTrue(cm.load(new Reference(baseUrl + "model.yaml"), V2State.MODEL).isValid());
+		assertEquals(1, clientPorts.size());
+	}
+
+	@Test
+	public void testRedirect() {
+		redirects.put("/api/moved.yaml", "/api/model.yaml");
+		redirects.put("/api/moved-twice.yaml", baseUrl + "moved.yaml");
+		Content<V2State> model = createContentManager().load(new Reference(baseUrl + "moved-twice.yaml"),
+				V2State.MODEL);
+		assertTrue(model.isValid());
+		assertEquals("2.0", model.at("/swagger").asText());
+		assertEquals(3, requests.get());
+	}
+
+	@Test
+	public void testTooManyRedirects() {
+		redirects.put("/api/loop.yaml", "/api/loop.yaml");
+		Content<V2State> loop = createContentManager().load(new Reference(baseUrl + "loop.yaml"), V2State.MODEL);
+		assertFalse(loop.isValid());
+		assertTrue(loop.getInvalidReason().contains("Too many redirects"));
+		assertEquals(HttpDocumentLoader.MAX_REDIRECTS + 1, requests.get());
+	}
+
+	@Test
+	public void testRedirectToUnsupportedScheme() {
+		redirects.put("/api/ftp.yaml", "ftp://localhost/api/model.yaml");
+		Content<V2State> ftp = createContentManager().load(new Reference(baseUrl + "ftp.yaml"), V2State.MODEL);
+		assertFalse(ftp.isValid());
+		assertTrue(ftp.getInvalidReason().contains("unsupported URL"));
+	}
+
+	@Test
+	public void testNonSuccessStatus() {
+		// not modified, but nothing was cached
+		statuses.put("/api/model.yaml", 304);
+		Content<V2State> unmodified = createContentManager().load(new Reference(baseUrl + "model.yaml"),
+				V2State.MODEL);
+		assertFalse(unmodified.isValid());
+		assertTrue(unmodified.getInvalidReason().contains("response code: 304"));
+		statuses.put("/api/model.yaml", 300);
+		Content<V2State> choices = createContentManager().load(new Reference(baseUrl + "model.yaml"),
+				V2State.MODEL);
+		assertFalse(choices.isValid());
+		assertTrue(choices.getInvalidReason().contains("response code: 300"));
+	}
+
+	private ContentManager<V2State> createContentManager(Option... options) {
+		DocumentLoaderRegistry loaders = DocumentLoaderRegistry.standard(null).register("http",
+				new HttpDocumentLoader(MAX_PER_HOST, 16));
+		Options opts = Options.of(options);
+		opts.replace(Option.DOCUMENT_LOADERS(loaders));
+		return new ContentManager<V2State>(opts, new V2StateMachine());
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		clientPorts.add(exchange.getRemoteAddress().getPort());
+		int current = inFlight.incrementAndGet();
+		maxInFlight.accumulateAndGet(current, Math::max);
+		try {
+			Thread.sleep(5);
+			String path = exchange.getRequestURI().getPath();
+			String document = documents.get(path);
+			if (redirects.containsKey(path)) {
+				exchange.getResponseHeaders().set("Location", redirects.get(path));
+				exchange.sendResponseHeaders(302, -1);
+			} else if (statuses.containsKey(path)) {
+				exchange.sendResponseHeaders(statuses.get(path), -1);
+			} else if (document == null) {
+				byte[] body = "Not found".getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(404, body.length);
+				exchange.getResponseBody().write(body);
+			} else {
+				// gzip-encode when asked, as most servers would
+				byte[] body = document.getBytes(StandardCharsets.UTF_8);
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					try (OutputStream out = new GZIPOutputStream(compressed)) {
+						out.write(body);
+					}
+					body = compressed.toByteArray();
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			inFlight.decrementAndGet();
+			exchange.close();
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.FailedLoadCache;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.ReferenceProcessor;
+import com.reprezen.kaizen.normalizer.SharedDocumentCache;
+import com.reprezen.kaizen.normalizer.loader.DocumentLoaderRegistry;
+import com.reprezen.kaizen.normalizer.loader.InMemoryDocumentLoader;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class InMemoryDocumentsTest extends NormalizerTestBase {
+
+	private static final String BASE = "https://specs.example.com/api/";
+	private static final String SCHEMA_POINTER = "/paths/~1pets/get/responses/200/schema";
+
+	@Test
+	public void testProcess() throws MalformedURLException {
+		Map<String, ByteBuffer> documents = new HashMap<>();
+		documents.put(BASE + "model.yaml", buffer("swagger: '2.0'\ninfo:\n  title: In memory\npaths:\n  /pets:\n"
+				+ "    get:\n      responses:\n        200:\n          schema:\n"
+				+ "            $ref: 'defs/pet.yaml#/Pet'\n"));
+		documents.put(BASE + "defs/pet.yaml", buffer("Pet:\n  description: A pet\n"));
+		// the in-memory documents take precedence over the standard http loader, so
+		// nothing is fetched from the network
+		JsonNode result = new ReferenceProcessor<V2State>(new V2StateMachine(),
+				Options.of(Option.INLINE_ALL, Option.IN_MEMORY_DOCUMENTS(documents)))
+						.process(new URL(BASE + "model.yaml"));
+		assertEquals("In memory", result.at("/info/title").asText());
+		assertEquals("A pet", result.at(SCHEMA_POINTER + "/description").asText());
+	}
+
+	@Test
+	public void testSupplier() {
+		AtomicInteger supplied = new AtomicInteger();
+		InMemoryDocumentLoader documents = new InMemoryDocumentLoader() //
+				.put("mem:/api/model.yaml", () -> {
+					supplied.incrementAndGet();
+					return buffer("swagger: '2.0'\ndefinitions:\n  Pet:\n    $ref: 'pet.yaml'\n");
+				}) //
+				.put("mem:/api/pet.yaml", buffer("type: object\n"));
+		DocumentLoaderRegistry loaders = DocumentLoaderRegistry.standard(null).withDocuments(documents);
+		ContentManager<V2State> cm = new ContentManager<V2State>(Options.of(Option.DOCUMENT_LOADERS(loaders)),
+				new V2StateMachine());
+		Content<V2State> model = cm.load(new Reference("mem:/api/model.yaml"), V2State.MODEL);
+		assertTrue(model.isValid());
+		Content<V2State> pet = cm.load(new Reference(model.at("/definitions/Pet/$ref").asText(), model.getRef()),
+				V2State.SCHEMA);
+		assertEquals("object", pet.at("/type").asText());
+		assertEquals(1, supplied.get());
+	}
+
+	@Test
+	public void testSharedCacheBypassed() throws MalformedURLException {
+		SharedDocumentCache cache = new SharedDocumentCache(Long.MAX_VALUE);
+		FailedLoadCache failures = new FailedLoadCache(60000);
+		for (String title : new String[] { "First", "Second" }) {
+			Map<String, ByteBuffer> documents = new HashMap<>();
+			documents.put(BASE + "model.yaml", buffer("swagger: '2.0'\ninfo:\n  title: " + title + "\npaths: {}\n"));
+			JsonNode result = new ReferenceProcessor<V2State>(new V2StateMachine(),
+					Options.of(Option.IN_MEMORY_DOCUMENTS(documents), Option.SHARED_CACHE(cache),
+							Option.FAILED_LOAD_CACHE(failures))).process(new URL(BASE + "model.yaml"));
+			assertEquals(title, result.at("/info/title").asText());
+		}
+		assertNull(cache.get(new URL(BASE + "model.yaml")));
+	}
+
+	private static ByteBuffer buffer(String content) {
+		return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,89 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.reprezen.kaizen.normalizer.ModelWatcher;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.SharedDocumentCache;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class ModelWatcherTest extends NormalizerTestBase {
+
+	private static final String SCHEMA_POINTER = "/paths/~1pets/get/responses/200/schema/description";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path tempDir;
+	private Path model;
+	private Path defs;
+	private SharedDocumentCache cache;
+	private ModelWatcher<V2State> watcher;
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = tempFolder.getRoot().toPath();
+		model = tempDir.resolve("model.yaml");
+		defs = tempDir.resolve("defs.yaml");
+		write(model, "swagger: '2.0'\ninfo:\n  title: Watched\npaths:\n  /pets:\n    get:\n      responses:\n"
+				+ "        200:\n          schema:\n            $ref: 'defs.yaml#/Pet'\n");
+		write(defs, "Pet:\n  description: A pet\n");
+		cache = new SharedDocumentCache(Long.MAX_VALUE);
+		watcher = new ModelWatcher<V2State>(new V2StateMachine(),
+				Options.of(Option.INLINE_ALL, Option.SHARED_CACHE(cache)), model.toUri().toURL());
+	}
+
+	@After
+	public void teardown() throws IOException {
+		watcher.close();
+	}
+
+	@Test
+	public void testChangeDetected() throws IOException, InterruptedException {
+		assertEquals("A pet", watcher.normalize().at(SCHEMA_POINTER).asText());
+		long misses = cache.getMissCount();
+		write(defs, "Pet:\n  description: A changed pet\n");
+		assertEquals(Collections.singleton(defs.toUri().toURL()), watcher.awaitChanges(10, TimeUnit.SECONDS));
+		assertEquals("A changed pet", watcher.getResult().at(SCHEMA_POINTER).asText());
+		// only the changed file was parsed again
+		assertEquals(misses + 1, cache.getMissCount());
+	}
+
+	@Test
+	public void testIrrelevantChangesIgnored() throws IOException, InterruptedException {
+		watcher.normalize();
+		// same content
+		write(defs, "Pet:\n  description: A pet\n");
+		// file not used by the model
+		write(tempDir.resolve("other.yaml"), "Other:\n  description: Not referenced\n");
+		assertEquals(Collections.<URL> emptySet(), watcher.awaitChanges(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCallerOptionsUnchanged() throws IOException {
+		Options options = Options.of(Option.INLINE_ALL);
+		try (ModelWatcher<V2State> other = new ModelWatcher<V2State>(new V2StateMachine(), options,
+				model.toUri().toURL())) {
+			assertEquals("A pet", other.normalize().at(SCHEMA_POINTER).asText());
+		}
+		assertNull(options.getSharedCache());
+	}
+
+	private void write(Path path, String content) throws IOException {
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
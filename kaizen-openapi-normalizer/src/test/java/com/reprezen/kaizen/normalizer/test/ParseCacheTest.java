@@ -0,0 +1,86 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.ParseCache;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class ParseCacheTest extends NormalizerTestBase {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path tempDir;
+	private Path model;
+	private ParseCache cache;
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = tempFolder.getRoot().toPath();
+		model = tempDir.resolve("model.yaml");
+		Files.write(model, "swagger: '2.0'\ninfo:\n  title: Cached\n".getBytes(StandardCharsets.UTF_8));
+		cache = new ParseCache(tempDir.resolve("cache"));
+	}
+
+	@Test
+	public void testWarmCache() throws IOException {
+		Content<V2State> cold = load();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		Content<V2State> warm = load();
+		assertEquals(1, cache.getHitCount());
+		assertEquals(cold.getTree(), warm.getTree());
+		assertEquals("Cached", warm.at("/info/title").asText());
+	}
+
+	@Test
+	public void testChangedFile() throws IOException {
+		load();
+		Files.write(model, "swagger: '2.0'\ninfo:\n  title: Changed\n".getBytes(StandardCharsets.UTF_8));
+		assertEquals("Changed", load().at("/info/title").asText());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testTouchedFile() throws IOException {
+		load();
+		Files.setLastModifiedTime(model, FileTime.fromMillis(Files.getLastModifiedTime(model).toMillis() + 5000));
+		assertEquals("Cached", load().at("/info/title").asText());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testSizeAndTimeTrusted() throws IOException {
+		load();
+		FileTime modified = Files.getLastModifiedTime(model);
+		// same size and modification time, so the content isn't read to check it
+		Files.write(model, "swagger: '2.0'\ninfo:\n  title: Cachet\n".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(model, modified);
+		assertEquals("Cached", load().at("/info/title").asText());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	private Content<V2State> load() throws IOException {
+		ContentManager<V2State> cm = new ContentManager<V2State>(Options.of(Option.PARSE_CACHE(cache)),
+				new V2StateMachine());
+		Content<V2State> content = cm.load(new Reference(model.toUri().toURL()), V2State.MODEL);
+		assertTrue(content.isValid());
+		return content;
+	}
+}
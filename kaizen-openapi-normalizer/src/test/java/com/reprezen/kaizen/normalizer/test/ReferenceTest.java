@@ -6,13 +6,22 @@ import static com.reprezen.kaizen.normalizer.test.ReferenceTest.RefTester.ref;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Arrays;
 
 import org.junit.Test;
 
 import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.reprezen.kaizen.normalizer.CanonicalRef;
 import com.reprezen.kaizen.normalizer.Component;
+import com.reprezen.kaizen.normalizer.ComponentRegistry;
+import com.reprezen.kaizen.normalizer.InvalidReferenceException;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Option.OptionType;
+import com.reprezen.kaizen.normalizer.Options;
 import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.ReferenceFactory;
 import com.reprezen.kaizen.normalizer.v2.V2State;
 import com.reprezen.kaizen.normalizer.v3.V3State;
 
@@ -148,6 +157,27 @@ public class ReferenceTest extends NormalizerTestBase {
 		checkStringField(refNode.path("$ref"), "http://example.com#abc");
 		checkException(refNode.path(ADORNMENT_PROPERTY).path("invalidException"),
 				new IllegalArgumentException("Invalid input: JSON Pointer expression must start with '/': \"abc\""));
+		// the exception comes back as a descriptor, which is written out just like the original
+		Exception restored = Reference.of(refNode).getInvalidException();
+		assertTrue(restored instanceof InvalidReferenceException);
+		assertEquals(ref.getInvalidException().toString(), restored.toString());
+		assertEquals(refNode, Reference.of(refNode).getRefNode());
+	}
+
+	@Test
+	public void testComponentRegistry() {
+		ComponentRegistry registry = ComponentRegistry.getDefault();
+		assertEquals("v3:SCHEMA_DEF", registry.getKey(V3State.SCHEMA_DEF));
+		assertTrue(registry.getKey(V3State.SCHEMA_DEF) == registry.getKey(V3State.SCHEMA_DEF));
+		assertEquals(V3State.SCHEMA_DEF, registry.getComponent("v3:SCHEMA_DEF"));
+		assertEquals(V2State.MODEL, registry.getComponent(V2State.class.getName(), "MODEL"));
+		assertNull(registry.getComponent("v2:NO_SUCH_STATE"));
+		assertNull(registry.getComponent("nonsense"));
+		// adornments written before components had ids still read back
+		ObjectNode legacy = (ObjectNode) new Reference("http://example.com#/a", null, V2State.SCHEMA).getRefNode();
+		((ObjectNode) legacy.get(ADORNMENT_PROPERTY)).putObject("component").put("class", V2State.class.getName())
+				.put("name", "PATH");
+		assertEquals(V2State.PATH, Reference.of(legacy).getComponent());
 	}
 
 	private void checkStringField(JsonNode node, String value) {
@@ -172,8 +202,7 @@ public class ReferenceTest extends NormalizerTestBase {
 
 	private void checkComponent(JsonNode node, Component comp) {
 		if (comp != null) {
-			checkStringField(node.path("class"), comp.getClass().getName());
-			checkStringField(node.path("name"), comp.name());
+			checkStringField(node, ComponentRegistry.getDefault().getKey(comp));
 		} else {
 			assertTrue(node.isNull() || node.isMissingNode());
 		}
@@ -188,6 +217,50 @@ public class ReferenceTest extends NormalizerTestBase {
 		}
 	}
 
+	@Test
+	public void testSharedCanonicalForm() {
+		Reference base = new Reference("http://example.com/api/model.yaml");
+		Reference ref = new Reference("common.yaml#/Pet", base, V2State.SCHEMA);
+		Reference other = new Reference("common.yaml#/Pet", base, V2State.RESPONSE);
+		assertTrue(ref.getCanonical() == other.getCanonical());
+		assertEquals(ref, other);
+		assertEquals(ref.hashCode(), other.hashCode());
+		assertTrue(ref.getUrlRef().getCanonical() == other.getUrlRef().getCanonical());
+		assertEquals("http://example.com/api/common.yaml", ref.getUrlRef().getCanonicalString());
+		// per-use state is not shared
+		ref.markInvalid("broken");
+		assertTrue(other.isValid());
+		Reference simple = new Reference("common.yaml#Pet", base, V2State.SCHEMA);
+		new Reference("common.yaml#Pet", base, V2State.SCHEMA).rewriteSimpleRef();
+		assertEquals("Pet", simple.getFragment());
+	}
+
+	@Test
+	public void testReferenceFactory() {
+		ReferenceFactory factory = new ReferenceFactory(2);
+		CanonicalRef ref = factory.get(null, "http://example.com/a.yaml#/x");
+		assertTrue(ref == factory.get(null, "http://example.com/a.yaml#/x"));
+		assertEquals(1, factory.getHitCount());
+		assertEquals(ref, factory.get(ref.getUrl(), "#/x"));
+		assertEquals("http://example.com/b.yaml", factory.get(ref.getUrl(), "b.yaml").toString());
+		assertEquals(1, factory.size());
+		// unparseable URLs are not cached
+		assertNotNull(factory.get(null, "/no/protocol").getParseException());
+		assertEquals(1, factory.size());
+	}
+
+	@Test
+	public void testScope() throws MalformedURLException {
+		Options options = Options.of(new Option(OptionType.ADDITIONAL_FILES,
+				Arrays.asList("common/pet.yaml", "../shared/error.yaml")));
+		options.resolveScope("http://example.com/api/./model.yaml");
+		assertTrue(options.isUrlInScope("http://example.com/api/model.yaml"));
+		assertTrue(options.isUrlInScope("http://example.com/api/common/pet.yaml"));
+		assertTrue(options.isInScope(new Reference("http://example.com/shared/error.yaml#/Error")));
+		assertFalse(options.isUrlInScope("http://example.com/api/other.yaml"));
+		assertEquals("http://example.com/shared/error.yaml", options.getAdditionalFileUrls().get(1).toString());
+	}
+
 	@Test
 	public void testRefEquality() {
 		// Reference ref = new Reference("http://example.com/foo/bar")
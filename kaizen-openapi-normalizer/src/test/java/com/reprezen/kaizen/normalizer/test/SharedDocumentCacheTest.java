@@ -0,0 +1,81 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.SharedDocumentCache;
+import com.reprezen.kaizen.normalizer.util.CompactNode;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class SharedDocumentCacheTest extends NormalizerTestBase {
+
+	@Test
+	public void testSharedAcrossContentManagers() throws IOException {
+		SharedDocumentCache cache = new SharedDocumentCache(Long.MAX_VALUE);
+		Content<V2State> first = load(cache, getYamlFileUrl("StateWalkV2"));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		Content<V2State> second = load(cache, getYamlFileUrl("StateWalkV2"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(first.getTree(), second.getTree());
+		assertFalse(first.getTree() == second.getTree());
+		assertEquals(loadYaml("StateWalkV2"), second.getTree());
+	}
+
+	@Test
+	public void testCachedTreeUnaffectedByChanges() throws IOException {
+		SharedDocumentCache cache = new SharedDocumentCache(Long.MAX_VALUE);
+		((ObjectNode) load(cache, getYamlFileUrl("StateWalkV2")).getTree()).put("swagger", "changed");
+		((ObjectNode) load(cache, getYamlFileUrl("StateWalkV2")).getTree()).put("swagger", "changed again");
+		assertEquals("2.0", load(cache, getYamlFileUrl("StateWalkV2")).at("/swagger").asText());
+	}
+
+	@Test
+	public void testCachedTreeShared() throws IOException {
+		SharedDocumentCache cache = new SharedDocumentCache(Long.MAX_VALUE);
+		URL url = getYamlFileUrl("StateWalkV2");
+		load(cache, url);
+		assertTrue(cache.get(url) instanceof CompactNode);
+		assertTrue(cache.get(url) == cache.get(url));
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		long walkV2Weight = SharedDocumentCache.estimateWeight(loadYaml("StateWalkV2"));
+		long walkV3Weight = SharedDocumentCache.estimateWeight(loadYaml("StateWalkV3"));
+		SharedDocumentCache cache = new SharedDocumentCache(Math.max(walkV2Weight, walkV3Weight));
+		load(cache, getYamlFileUrl("StateWalkV2"));
+		assertEquals(walkV2Weight, cache.getWeight());
+		load(cache, getYamlFileUrl("StateWalkV3"));
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(1, cache.size());
+		assertEquals(walkV3Weight, cache.getWeight());
+		load(cache, getYamlFileUrl("StateWalkV2"));
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void testTooHeavy() {
+		SharedDocumentCache cache = new SharedDocumentCache(100);
+		load(cache, getYamlFileUrl("StateWalkV2"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	private Content<V2State> load(SharedDocumentCache cache, URL url) {
+		ContentManager<V2State> cm = new ContentManager<V2State>(Options.of(Option.SHARED_CACHE(cache)),
+				new V2StateMachine());
+		Content<V2State> content = cm.load(new Reference(url), V2State.MODEL);
+		assertTrue(content.isValid());
+		return content;
+	}
+}
@@ -0,0 +1,146 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.ReferenceProcessor;
+import com.reprezen.kaizen.normalizer.ReferenceScanner.ScanOp;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+import com.reprezen.kaizen.normalizer.v3.V3State;
+import com.reprezen.kaizen.normalizer.v3.V3StateMachine;
+
+public class SkipExamplesTest extends NormalizerTestBase {
+
+	private static final String BASE = "https://specs.example.com/api/";
+
+	private static final String V3_MODEL = "openapi: 3.0.0\n" //
+			+ "info: {title: Examples, version: '1'}\n" //
+			+ "paths:\n" //
+			+ "  /pets:\n" //
+			+ "    get:\n" //
+			+ "      parameters:\n" //
+			+ "        - name: id\n" //
+			+ "          in: query\n" //
+			+ "          schema: {type: string, example: abc}\n" //
+			+ "          example: abc\n" //
+			+ "          examples:\n" //
+			+ "            one: {summary: One, value: abc}\n" //
+			+ "      responses:\n" //
+			+ "        '200':\n" //
+			+ "          description: ok\n" //
+			+ "          content:\n" //
+			+ "            application/json:\n" //
+			+ "              schema: {$ref: 'pet.yaml#/Pet'}\n" //
+			+ "              example: {name: Rex}\n" //
+			+ "              examples:\n" //
+			+ "                rex: {$ref: '#/components/examples/Rex'}\n" //
+			+ "components:\n" //
+			+ "  examples:\n" //
+			+ "    Rex: {summary: A dog, value: {name: Rex}}\n";
+
+	private static final String V2_MODEL = "swagger: '2.0'\n" //
+			+ "info: {title: Examples, version: '1'}\n" //
+			+ "paths:\n" //
+			+ "  /pets:\n" //
+			+ "    get:\n" //
+			+ "      responses:\n" //
+			+ "        200:\n" //
+			+ "          description: ok\n" //
+			+ "          schema: {$ref: 'pet.yaml#/Pet'}\n" //
+			+ "          examples:\n" //
+			+ "            application/json: {name: Rex}\n";
+
+	private static final String PET = "Pet:\n" //
+			+ "  type: object\n" //
+			+ "  example: {name: Rex}\n" //
+			+ "  properties:\n" //
+			+ "    example: {type: string}\n";
+
+	@Test
+	public void testV3() {
+		ContentManager<V3State> full = contentManager(false);
+		ContentManager<V3State> skipping = contentManager(true);
+		String param = "/paths/~1pets/get/parameters/0";
+		String mediaType = "/paths/~1pets/get/responses/200/content/application~1json";
+		assertEquals("abc", load(full, "model.yaml", V3State.MODEL).at(param + "/example").asText());
+		JsonNode model = load(skipping, "model.yaml", V3State.MODEL);
+		assertTrue(model.at(param + "/example").isMissingNode());
+		assertTrue(model.at(param + "/schema/example").isMissingNode());
+		assertEquals("One", model.at(param + "/examples/one/summary").asText());
+		assertTrue(model.at(param + "/examples/one/value").isMissingNode());
+		assertTrue(model.at(mediaType + "/example").isMissingNode());
+		assertEquals("A dog", model.at("/components/examples/Rex/summary").asText());
+		assertTrue(model.at("/components/examples/Rex/value").isMissingNode());
+		JsonNode pet = load(skipping, "pet.yaml#/Pet", V3State.SCHEMA);
+		assertTrue(pet.at("/example").isMissingNode());
+		// a property that happens to be named "example" is not an example
+		assertEquals("string", pet.at("/properties/example/type").asText());
+	}
+
+	@Test
+	public void testAt() {
+		Content<V3State> model = contentManager(true).load(new Reference(BASE + "model.yaml"), V3State.MODEL);
+		// looked up before the tree is obtained
+		String param = "/paths/~1pets/get/parameters/0";
+		assertTrue(model.at(param + "/example").isMissingNode());
+		assertTrue(model.at(param + "/examples/one/value").isMissingNode());
+		assertTrue(model.at(param).get("example") == null);
+		assertEquals("One", model.at(param + "/examples/one/summary").asText());
+	}
+
+	@Test
+	public void testV2() throws MalformedURLException {
+		JsonNode full = process(V2_MODEL, Option.INLINE_ALL);
+		JsonNode skipped = process(V2_MODEL, Option.INLINE_ALL, Option.SKIP_EXAMPLES);
+		String response = "/paths/~1pets/get/responses/200";
+		assertEquals("Rex", full.at(response + "/examples/application~1json/name").asText());
+		assertTrue(skipped.at(response + "/examples").isMissingNode());
+		assertTrue(skipped.at(response + "/schema/example").isMissingNode());
+		assertEquals("string", skipped.at(response + "/schema/properties/example/type").asText());
+	}
+
+	private JsonNode process(String model, Option... options) throws MalformedURLException {
+		Option[] allOptions = Arrays.copyOf(options, options.length + 1);
+		allOptions[options.length] = Option.IN_MEMORY_DOCUMENTS(documents(model));
+		return new ReferenceProcessor<V2State>(new V2StateMachine(), Options.of(allOptions))
+				.process(new URL(BASE + "model.yaml"));
+	}
+
+	private ContentManager<V3State> contentManager(boolean skipExamples) {
+		Option documents = Option.IN_MEMORY_DOCUMENTS(documents(V3_MODEL));
+		return new ContentManager<V3State>(
+				skipExamples ? Options.of(documents, Option.SKIP_EXAMPLES) : Options.of(documents),
+				new V3StateMachine());
+	}
+
+	private JsonNode load(ContentManager<V3State> cm, String refString, V3State state) {
+		Content<V3State> content = cm.load(new Reference(BASE + refString), state);
+		content.scan(ScanOp.LOAD);
+		return content.getTree();
+	}
+
+	private static Map<String, ByteBuffer> documents(String model) {
+		Map<String, ByteBuffer> documents = new HashMap<>();
+		documents.put(BASE + "model.yaml", buffer(model));
+		documents.put(BASE + "pet.yaml", buffer(PET));
+		return documents;
+	}
+
+	private static ByteBuffer buffer(String content) {
+		return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
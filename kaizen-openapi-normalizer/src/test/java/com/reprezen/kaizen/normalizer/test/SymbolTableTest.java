@@ -0,0 +1,91 @@
+package com.reprezen.kaizen.normalizer.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.reprezen.kaizen.normalizer.Content;
+import com.reprezen.kaizen.normalizer.ContentManager;
+import com.reprezen.kaizen.normalizer.Option;
+import com.reprezen.kaizen.normalizer.Options;
+import com.reprezen.kaizen.normalizer.Reference;
+import com.reprezen.kaizen.normalizer.util.DocumentParser;
+import com.reprezen.kaizen.normalizer.util.SymbolTable;
+import com.reprezen.kaizen.normalizer.v2.V2State;
+import com.reprezen.kaizen.normalizer.v2.V2StateMachine;
+
+public class SymbolTableTest extends NormalizerTestBase {
+
+	private static final String TYPE_POINTER = "/definitions/Product/properties/product_id/type";
+
+	@Test
+	public void testSharedAcrossDocuments() {
+		for (boolean compact : new boolean[] { false, true }) {
+			SymbolTable symbols = new SymbolTable();
+			Options options = compact ? Options.of(Option.COMPACT_TREES, Option.INTERN_SYMBOLS(symbols))
+					: Options.of(Option.INTERN_SYMBOLS(symbols));
+			ContentManager<V2State> cm = new ContentManager<V2State>(options, new V2StateMachine());
+			Content<V2State> walk = cm.load(new Reference(getYamlFileUrl("StateWalkV2")), V2State.MODEL);
+			Content<V2State> uber = cm.load(new Reference(getYamlFileUrl("uber")), V2State.MODEL);
+			assertTrue(cm.getSymbolTable() == symbols);
+			assertTrue(walk.at(TYPE_POINTER) == uber.at(TYPE_POINTER));
+			assertTrue(firstName(walk.at("/definitions/Product")) == firstName(uber.at("/definitions/Product")));
+			assertTrue(symbols.getSharedCount() > 0);
+			assertTrue(symbols.getSavedBytes() > 0);
+			assertTrue(symbols.toString().contains("duplicates shared"));
+		}
+	}
+
+	@Test
+	public void testSameTree() throws IOException {
+		JsonNode expected = loadYaml("multifile-uber");
+		for (DocumentParser parser : new DocumentParser[] { new DocumentParser().withSymbolTable(new SymbolTable()),
+				new DocumentParser().withSymbolTable(new SymbolTable(0)) }) {
+			try (InputStream in = getYamlFileUrl("multifile-uber").openStream()) {
+				assertEquals(expected, parser.parse(in));
+			}
+		}
+	}
+
+	@Test
+	public void testNamesOnly() {
+		SymbolTable symbols = new SymbolTable(0);
+		assertTrue(symbols.name(new String("type")) == symbols.name(new String("type")));
+		assertFalse(symbols.text("string") == symbols.text("string"));
+		assertEquals(0, symbols.getValueCount());
+		assertEquals(1, symbols.getSharedCount());
+	}
+
+	@Test
+	public void testParserFieldNames() throws IOException {
+		SymbolTable symbols = new SymbolTable();
+		String type = symbols.name(new String("type"));
+		JsonFactory factory = new JsonFactory();
+		try (JsonParser parser = symbols.interning(factory.createParser("{\"type\": 1, \"type\": 2, \"type\": 3}"))) {
+			assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+			assertTrue(parser.nextFieldName() == type);
+			assertEquals(JsonToken.VALUE_NUMBER_INT, parser.nextToken());
+			assertTrue(parser.nextFieldName(new SerializedString("type")));
+			assertTrue(parser.getCurrentName() == type);
+			assertEquals(JsonToken.VALUE_NUMBER_INT, parser.nextToken());
+			assertFalse(parser.nextFieldName(new SerializedString("other")));
+			assertTrue(parser.getCurrentName() == type);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testEmptyDocument() throws IOException {
+		new DocumentParser().withSymbolTable(new SymbolTable()).parse(new ByteArrayInputStream(new byte[0]));
+	}
+
+	private static String firstName(JsonNode node) {
+		return node.fieldNames().next();
+	}
+}